@@ -1,6 +1,7 @@
 package org.freespace.testingplatform.asserts.soft;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,7 +14,7 @@ import org.testng.Reporter;
  */
 public class TestBase {
 
-    private static Map verificationFailuresMap = new HashMap();
+    private static Map verificationFailuresMap = Collections.synchronizedMap(new HashMap());
 
     public static void assertTrue(boolean condition) {
         Assert.assertTrue(condition);
@@ -26,6 +26,26 @@ public class Config {
     public static final Boolean SKIP_LOGIN;
     public static final String LOGIN;
     public static final String PASSWORD;
+    public static final Integer POOL_SIZE;
+    public static final Integer LOGIN_SNAPSHOT_TTL;
+    public static final String SESSION_RESET;
+    public static final Integer COMMAND_TIMEOUT;
+    public static final Integer RECYCLE_COMMANDS;
+    public static final Integer RECYCLE_AGE;
+    public static final Integer RECYCLE_HEAP;
+    public static final String TEST_DURATIONS_FILE;
+    public static final Integer CONCURRENCY_MIN;
+    public static final Integer CONCURRENCY_MAX;
+    public static final Double CONCURRENCY_LOAD;
+    public static final Integer CONCURRENCY_FREE_MEMORY;
+    public static final Integer CONCURRENCY_WAIT;
+    public static final Boolean RELEASE_PER_TEST;
+    public static final Integer WAIT_TIMEOUT;
+    public static final Double WAIT_TIMEOUT_MULTIPLIER;
+    public static final String WAIT_LATENCIES_FILE;
+    public static final Integer WAIT_QUIET;
+    public static final Integer WAIT_QUIET_GRACE;
+    public static final Integer TEST_BUDGET;
     public static final boolean VERBOSE = true;
 
     static {
@@ -47,6 +67,27 @@ public class Config {
         SKIP_LOGIN = Boolean.valueOf(props.getProperty("skip.login"));
         LOGIN = props.getProperty("login");
         PASSWORD = props.getProperty("password");
+        POOL_SIZE = Integer.valueOf(props.getProperty("webdriver.pool.size", "1"));
+        LOGIN_SNAPSHOT_TTL = Integer.valueOf(props.getProperty("login.snapshot.ttl", "1800"));
+        SESSION_RESET = props.getProperty("session.reset", "cookies");
+        COMMAND_TIMEOUT = Integer.valueOf(props.getProperty("webdriver.command.timeout", "120"));
+        RECYCLE_COMMANDS = Integer.valueOf(props.getProperty("webdriver.recycle.commands", "5000"));
+        RECYCLE_AGE = Integer.valueOf(props.getProperty("webdriver.recycle.age", "60"));
+        RECYCLE_HEAP = Integer.valueOf(props.getProperty("webdriver.recycle.heap", "80"));
+        TEST_DURATIONS_FILE = props.getProperty("test.durations.file", "test-durations.properties");
+        CONCURRENCY_MIN = Integer.valueOf(props.getProperty("webdriver.concurrency.min", "1"));
+        CONCURRENCY_MAX = Integer.valueOf(props.getProperty("webdriver.concurrency.max",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        CONCURRENCY_LOAD = Double.valueOf(props.getProperty("webdriver.concurrency.load", "1.0"));
+        CONCURRENCY_FREE_MEMORY = Integer.valueOf(props.getProperty("webdriver.concurrency.memory", "10"));
+        CONCURRENCY_WAIT = Integer.valueOf(props.getProperty("webdriver.concurrency.wait", "60"));
+        RELEASE_PER_TEST = Boolean.valueOf(props.getProperty("webdriver.release.per.test", "false"));
+        WAIT_TIMEOUT = Integer.valueOf(props.getProperty("wait.timeout", "60"));
+        WAIT_TIMEOUT_MULTIPLIER = Double.valueOf(props.getProperty("wait.timeout.multiplier", "0"));
+        WAIT_LATENCIES_FILE = props.getProperty("wait.latencies.file", "wait-latencies.properties");
+        WAIT_QUIET = Integer.valueOf(props.getProperty("wait.quiet", "500"));
+        WAIT_QUIET_GRACE = Integer.valueOf(props.getProperty("wait.quiet.grace", "1000"));
+        TEST_BUDGET = Integer.valueOf(props.getProperty("test.budget", "0"));
 
         log.info("Base url:   " + BASE_URL);
         log.info("WebDriver:  " + WEBDRIVER);
@@ -54,6 +95,16 @@ public class Config {
         log.info("Skip login: " + SKIP_LOGIN);
         log.info("Login:      " + LOGIN);
         log.info("Password:   " + PASSWORD);
+        log.info("Pool size:  " + POOL_SIZE);
+        log.info("Login TTL:  " + LOGIN_SNAPSHOT_TTL + " s");
+        log.info("Reset:      " + SESSION_RESET);
+        log.info("Command timeout: " + COMMAND_TIMEOUT + " s");
+        log.info("Recycle after: " + RECYCLE_COMMANDS + " commands, " + RECYCLE_AGE + " min, " + RECYCLE_HEAP + "% heap");
+        log.info("Concurrent sessions: " + CONCURRENCY_MIN + " to " + CONCURRENCY_MAX + ", wait up to " + CONCURRENCY_WAIT + " s");
+        log.info("Release session: " + (RELEASE_PER_TEST ? "after every test" : "after every class"));
+        log.info("Wait timeout: " + WAIT_TIMEOUT + " s, learned: " + WAIT_TIMEOUT_MULTIPLIER + " x p99");
+        log.info("Quiet window: " + WAIT_QUIET + " ms, " + WAIT_QUIET_GRACE + " ms more on a new page");
+        log.info("Test budget: " + TEST_BUDGET + " s");
     }
 
 
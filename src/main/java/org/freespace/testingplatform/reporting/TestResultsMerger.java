@@ -0,0 +1,83 @@
+package org.freespace.testingplatform.reporting;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Merges the testng-results.xml files written by several TestNG runs into one, so that
+ * {@link IssueReporter} sees a sharded run as a single suite run.
+ */
+public class TestResultsMerger {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestResultsMerger.class);
+    private static final String ROOT = "testng-results";
+    private static final String REPORTER_OUTPUT = "reporter-output";
+    private static final String SUITE = "suite";
+    private static final String[] COUNTERS = {"skipped", "failed", "total", "passed"};
+
+    public static void merge(List<File> sources, File target) throws ParserConfigurationException, SAXException,
+            IOException, TransformerException {
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Document merged = builder.newDocument();
+        Element root = merged.createElement(ROOT);
+        merged.appendChild(root);
+        Element reporterOutput = merged.createElement(REPORTER_OUTPUT);
+        root.appendChild(reporterOutput);
+        long[] counters = new long[COUNTERS.length];
+
+        for (File source : sources) {
+            if (!source.exists()) {
+                LOG.warn("No results found at " + source);
+                continue;
+            }
+            LOG.debug("Merging " + source);
+            Element sourceRoot = builder.parse(source).getDocumentElement();
+            for (int i = 0; i < COUNTERS.length; i++) {
+                String value = sourceRoot.getAttribute(COUNTERS[i]);
+                if (value.length() > 0) {
+                    counters[i] += Long.parseLong(value);
+                }
+            }
+            NodeList children = sourceRoot.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                Node child = children.item(i);
+                if (REPORTER_OUTPUT.equals(child.getNodeName())) {
+                    NodeList lines = child.getChildNodes();
+                    for (int j = 0; j < lines.getLength(); j++) {
+                        reporterOutput.appendChild(merged.importNode(lines.item(j), true));
+                    }
+                } else if (SUITE.equals(child.getNodeName())) {
+                    root.appendChild(merged.importNode(child, true));
+                }
+            }
+        }
+        for (int i = 0; i < COUNTERS.length; i++) {
+            root.setAttribute(COUNTERS[i], String.valueOf(counters[i]));
+        }
+
+        target.getParentFile().mkdirs();
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.transform(new DOMSource(merged), new StreamResult(target));
+        LOG.debug("Merged " + sources.size() + " result files into " + target);
+    }
+}
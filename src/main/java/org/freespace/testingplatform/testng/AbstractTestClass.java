@@ -4,20 +4,31 @@ import java.lang.reflect.Method;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
+import org.freespace.testingplatform.config.Config;
+import org.freespace.testingplatform.webdriver.TestDeadline;
+import org.freespace.testingplatform.webdriver.pages.WaitLatencies;
+import org.freespace.testingplatform.webdriver.session.LoginFlow;
+import org.freespace.testingplatform.webdriver.session.LoginSnapshotCache;
+import org.freespace.testingplatform.webdriver.session.SessionControl;
+import org.freespace.testingplatform.webdriver.utils.SelfHealingElements;
 import org.openqa.selenium.Cookie;
 import org.openqa.selenium.WebDriver;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
 
 
 /**
  * Author: Andrey Rebrov &lt;andrey.rebrov@ubs.com>
  */
 @Component
+@Listeners(TestDeadlineListener.class)
 @ContextConfiguration(locations = {"classpath:service-context.xml"})
 public abstract class AbstractTestClass extends AbstractTestNGSpringContextTests {
 
@@ -26,6 +37,9 @@ public abstract class AbstractTestClass extends AbstractTestNGSpringContextTests
     @Autowired
     private WebDriver driver;
 
+    @Autowired
+    private LoginSnapshotCache loginSnapshotCache;
+
     @BeforeMethod(alwaysRun = true)
     public void printTestName(Method method) {
         log.info("---------------------------------------");
@@ -33,27 +47,100 @@ public abstract class AbstractTestClass extends AbstractTestNGSpringContextTests
         log.info("---------------------------------------");
     }
 
+    /**
+     * Bounds the test to {@code test.budget} seconds, see {@link TestDeadline}. The
+     * {@link TestDeadlineListener} clears it when the test method returns.
+     */
+    @BeforeMethod(alwaysRun = true)
+    public void startDeadline(Method method) {
+        TestDeadline.start(method.getDeclaringClass().getSimpleName() + "." + method.getName(),
+                Config.TEST_BUDGET * 1000L);
+    }
+
+    /**
+     * Makes sure the test does not start on a browser that died during the previous one.
+     */
+    @BeforeMethod(alwaysRun = true)
+    public void checkWebDriver() {
+        if (driver instanceof SessionControl) {
+            ((SessionControl) driver).checkSession();
+        }
+    }
+
+    /**
+     * Isolates the next test with the {@link org.freespace.testingplatform.webdriver.session.SessionReset}
+     * strategy configured by {@code session.reset}. The tests of a class keep their browser.
+     * <p/>
+     * With {@code webdriver.release.per.test} the session goes back to the pool instead, so
+     * that the {@link org.freespace.testingplatform.webdriver.session.ConcurrencyController}
+     * can hold it back between tests; the next test of the class may then get another browser.
+     */
     @AfterMethod(alwaysRun = true)
-    public void clearCookies(Method method) throws Exception {
-        log.debug("Cookies before delete:\n" + cookiesToString());
+    public void resetSession(Method method) throws Exception {
+        if (log.isDebugEnabled()) {
+            log.debug("Cookies before reset:\n" + cookiesToString());
+        }
         try {
-            driver.manage().deleteAllCookies();
+            if (driver instanceof SessionControl && Config.RELEASE_PER_TEST) {
+                ((SessionControl) driver).releaseSession();
+            } else if (driver instanceof SessionControl) {
+                ((SessionControl) driver).resetSession();
+            } else {
+                driver.manage().deleteAllCookies();
+            }
         } catch (Exception e) {
-            log.debug("Selenium can not delete cookies");
+            log.debug("Selenium can not reset session", e);
         }
-        log.debug("Cookies after delete:\n" + cookiesToString());
         log.info(method.getDeclaringClass() + "." + method.getName() + " finished.");
     }
 
+    /**
+     * @deprecated the reset is no longer limited to cookies, use {@link #resetSession(Method)}
+     */
+    @Deprecated
+    public void clearCookies(Method method) throws Exception {
+        resetSession(method);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void releaseWebDriver() {
+        if (driver instanceof SessionControl) {
+            ((SessionControl) driver).releaseSession();
+        }
+    }
+
+    /**
+     * Keeps the wait latencies of this run for the timeouts of the next ones.
+     */
+    @AfterSuite(alwaysRun = true)
+    public void saveWaitLatencies() {
+        WaitLatencies.getInstance().save();
+        log.info("Stale elements located again: " + SelfHealingElements.getHealCount());
+    }
+
     private String cookiesToString() {
-        String result = "";
+        StringBuilder result = new StringBuilder();
         Set<Cookie> cookies = driver.manage().getCookies();
         for (Cookie cookie : cookies) {
-            result += cookie + "\n";
+            result.append(cookie).append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * Logs the configured user in, restoring a cached session snapshot instead of going
+     * through the login page whenever possible. Does nothing if login is skipped.
+     */
+    protected void login(LoginFlow loginFlow) {
+        if (Config.SKIP_LOGIN) {
+            return;
         }
-        return result;
+        loginSnapshotCache.ensureLoggedIn(driver, loginFlow, Config.LOGIN, Config.PASSWORD);
     }
 
+    /**
+     * @return the driver of the calling thread, safe to use with TestNG parallel="methods"
+     */
     protected WebDriver getWebDriver() {
         return driver;
     }
@@ -0,0 +1,83 @@
+package org.freespace.testingplatform.testng;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.freespace.testingplatform.config.Config;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.TestListenerAdapter;
+
+/**
+ * Orders test methods longest first, using the durations recorded in previous runs, and
+ * records the durations of this run.
+ * <p/>
+ * With parallel="methods" TestNG hands methods to the worker threads in the order returned
+ * here, which makes the schedule a longest-processing-time-first one: a slow data-driven
+ * method no longer starts last and keeps one worker busy while all the others sit idle.
+ * Register it in testng.xml:
+ * <pre>
+ *   &lt;listeners&gt;
+ *     &lt;listener class-name="org.freespace.testingplatform.testng.LongestFirstScheduler"/&gt;
+ *   &lt;/listeners&gt;
+ * </pre>
+ */
+public class LongestFirstScheduler extends TestListenerAdapter implements IMethodInterceptor {
+
+    private static final Logger log = Logger.getLogger(LongestFirstScheduler.class);
+    private static TestDurationHistory history;
+
+    public static synchronized TestDurationHistory getHistory() {
+        if (history == null) {
+            history = TestDurationHistory.load(new File(Config.TEST_DURATIONS_FILE));
+        }
+        return history;
+    }
+
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        final TestDurationHistory durations = getHistory();
+        List<IMethodInstance> ordered = new ArrayList<IMethodInstance>(methods);
+        Collections.sort(ordered, new Comparator<IMethodInstance>() {
+            public int compare(IMethodInstance one, IMethodInstance two) {
+                long first = durations.estimate(key(one.getMethod()));
+                long second = durations.estimate(key(two.getMethod()));
+                return first > second ? -1 : (first < second ? 1 : 0);
+            }
+        });
+        if (log.isDebugEnabled() && !ordered.isEmpty()) {
+            log.debug("Running " + key(ordered.get(0).getMethod()) + " first, expected to take "
+                    + durations.estimate(key(ordered.get(0).getMethod())) + " ms");
+        }
+        return ordered;
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        record(result);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        record(result);
+    }
+
+    @Override
+    public void onFinish(ITestContext context) {
+        getHistory().save();
+    }
+
+    private void record(ITestResult result) {
+        getHistory().record(key(result.getMethod()), result.getEndMillis() - result.getStartMillis());
+    }
+
+    static String key(ITestNGMethod method) {
+        return method.getRealClass().getName() + "." + method.getMethodName();
+    }
+}
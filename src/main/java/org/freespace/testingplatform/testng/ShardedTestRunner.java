@@ -0,0 +1,156 @@
+package org.freespace.testingplatform.testng;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.freespace.testingplatform.reporting.TestResultsMerger;
+import org.testng.TestNG;
+
+/**
+ * Splits test classes across several forked JVMs on this machine and merges their results
+ * into target/surefire-reports/testng-results.xml afterwards.
+ * <p/>
+ * Every worker is a plain TestNG run with its own Spring context, driver pool and static
+ * state ({@code Config}, {@code TestBase}, {@code ExcelReader}), so nothing is shared
+ * between shards. Classes are dealt out longest first, each to the shard with the least
+ * work so far, based on the durations recorded by {@link LongestFirstScheduler}, which
+ * also orders the methods inside every worker. Usage:
+ * <pre>
+ *   java -cp ... org.freespace.testingplatform.testng.ShardedTestRunner 8 com.example.FirstTest com.example.SecondTest ...
+ * </pre>
+ */
+public class ShardedTestRunner {
+
+    private static final Logger log = Logger.getLogger(ShardedTestRunner.class);
+    private static final String RESULTS_DIR = "target/surefire-reports";
+    private static final String RESULTS_FILE = "testng-results.xml";
+
+    public static void main(String[] args) throws Exception {
+        int workers = args.length < 2 ? 0 : parseWorkers(args[0]);
+        if (workers < 1) {
+            System.err.println("Usage: ShardedTestRunner <workers> <test class>...");
+            System.err.println("  <workers> is the number of JVMs to fork, at least 1");
+            System.exit(2);
+        }
+        List<String> testClasses = Arrays.asList(args).subList(1, args.length);
+        List<List<String>> shards = partition(testClasses, workers);
+
+        List<Process> processes = new ArrayList<Process>();
+        List<Thread> pumps = new ArrayList<Thread>();
+        List<File> results = new ArrayList<File>();
+        for (int i = 0; i < shards.size(); i++) {
+            File outputDir = new File(RESULTS_DIR, "shard-" + i);
+            log.info("Shard " + i + ": " + shards.get(i));
+            Process process = fork(shards.get(i), outputDir);
+            Thread pump = new Thread(new OutputPump(process.getInputStream(), "[shard-" + i + "] "));
+            pump.start();
+            processes.add(process);
+            pumps.add(pump);
+            results.add(new File(outputDir, RESULTS_FILE));
+        }
+
+        int status = 0;
+        for (Process process : processes) {
+            status = Math.max(status, process.waitFor());
+        }
+        for (Thread pump : pumps) {
+            pump.join();
+        }
+        TestResultsMerger.merge(results, new File(RESULTS_DIR, RESULTS_FILE));
+        log.info("All shards finished, results merged into " + RESULTS_DIR + "/" + RESULTS_FILE);
+        System.exit(status);
+    }
+
+    private static int parseWorkers(String workers) {
+        try {
+            return Integer.parseInt(workers);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static List<List<String>> partition(List<String> testClasses, int workers) {
+        final TestDurationHistory history = LongestFirstScheduler.getHistory();
+        List<String> longestFirst = new ArrayList<String>(testClasses);
+        Collections.sort(longestFirst, new Comparator<String>() {
+            public int compare(String one, String two) {
+                long first = history.estimateClass(one);
+                long second = history.estimateClass(two);
+                return first > second ? -1 : (first < second ? 1 : 0);
+            }
+        });
+
+        int count = Math.min(workers, testClasses.size());
+        List<List<String>> shards = new ArrayList<List<String>>();
+        long[] load = new long[count];
+        for (int i = 0; i < count; i++) {
+            shards.add(new ArrayList<String>());
+        }
+        for (String testClass : longestFirst) {
+            int lightest = 0;
+            for (int i = 1; i < count; i++) {
+                if (load[i] < load[lightest]) {
+                    lightest = i;
+                }
+            }
+            shards.get(lightest).add(testClass);
+            load[lightest] += history.estimateClass(testClass);
+        }
+        return shards;
+    }
+
+    private static Process fork(List<String> testClasses, File outputDir) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<String>();
+        command.add(java);
+        // the same -D properties and JVM options as this one, but no second debugger on the same port
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!argument.startsWith("-agentlib:jdwp") && !argument.startsWith("-Xrunjdwp")) {
+                command.add(argument);
+            }
+        }
+        command.addAll(Arrays.asList(
+                "-cp", System.getProperty("java.class.path"),
+                TestNG.class.getName(),
+                "-d", outputDir.getPath(),
+                "-listener", LongestFirstScheduler.class.getName(),
+                "-testclass", StringUtils.join(testClasses, ",")));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        return builder.start();
+    }
+
+    private static class OutputPump implements Runnable {
+
+        private final InputStream input;
+        private final String prefix;
+
+        OutputPump(InputStream input, String prefix) {
+            this.input = input;
+            this.prefix = prefix;
+        }
+
+        public void run() {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    System.out.println(prefix + line);
+                }
+            } catch (IOException e) {
+                log.debug("Worker output closed", e);
+            }
+        }
+    }
+}
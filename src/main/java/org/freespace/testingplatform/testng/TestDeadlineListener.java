@@ -0,0 +1,23 @@
+package org.freespace.testingplatform.testng;
+
+import org.freespace.testingplatform.webdriver.TestDeadline;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+
+/**
+ * Clears the {@link TestDeadline} as soon as the test method returns, before any
+ * {@code @AfterMethod} runs. Clean-up hooks such as screenshots or logout then never fail
+ * because the test used up its budget, which would skip the rest of the class.
+ */
+public class TestDeadlineListener implements IInvokedMethodListener {
+
+    public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+    }
+
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (method.isTestMethod()) {
+            TestDeadline.clear();
+        }
+    }
+}
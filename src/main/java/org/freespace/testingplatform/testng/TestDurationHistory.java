@@ -0,0 +1,153 @@
+package org.freespace.testingplatform.testng;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Test durations remembered across runs, keyed by {@code class.method}. A method's duration
+ * is the time all of its invocations took in one run, so data-driven methods weigh as much
+ * as they actually cost.
+ * <p/>
+ * New observations are blended into the stored value, and saving merges with whatever other
+ * processes (see {@link ShardedTestRunner}) have written in the meantime.
+ */
+public class TestDurationHistory {
+
+    private static final Logger log = Logger.getLogger(TestDurationHistory.class);
+    private static final double WEIGHT_OF_LATEST_RUN = 0.5;
+
+    private final File file;
+    private final Map<String, Long> durations = new HashMap<String, Long>();
+    private final Map<String, Long> observed = new HashMap<String, Long>();
+
+    private TestDurationHistory(File file) {
+        this.file = file;
+    }
+
+    public static TestDurationHistory load(File file) {
+        TestDurationHistory history = new TestDurationHistory(file);
+        history.durations.putAll(read(file));
+        return history;
+    }
+
+    /**
+     * Adds the duration of one invocation to the total of its method in the current run.
+     */
+    public synchronized void record(String key, long millis) {
+        Long total = observed.get(key);
+        observed.put(key, total == null ? millis : total + millis);
+    }
+
+    /**
+     * @return the remembered duration, or the average of all known durations for a method
+     *         that has never run
+     */
+    public synchronized long estimate(String key) {
+        Long duration = durations.get(key);
+        return duration != null ? duration : average();
+    }
+
+    /**
+     * @return the sum of the remembered durations of all methods of the class
+     */
+    public synchronized long estimateClass(String className) {
+        long total = 0;
+        boolean known = false;
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            if (entry.getKey().startsWith(className + ".")) {
+                total += entry.getValue();
+                known = true;
+            }
+        }
+        return known ? total : average();
+    }
+
+    public synchronized void save() {
+        if (observed.isEmpty()) {
+            return;
+        }
+        try {
+            RandomAccessFile lockFile = new RandomAccessFile(new File(file.getPath() + ".lock"), "rw");
+            FileLock lock = lockFile.getChannel().lock();
+            try {
+                Map<String, Long> stored = read(file);
+                for (Map.Entry<String, Long> entry : observed.entrySet()) {
+                    Long previous = stored.get(entry.getKey());
+                    long latest = entry.getValue();
+                    stored.put(entry.getKey(), previous == null ? latest
+                            : Math.round(WEIGHT_OF_LATEST_RUN * latest + (1 - WEIGHT_OF_LATEST_RUN) * previous));
+                }
+                write(file, stored);
+                durations.clear();
+                durations.putAll(stored);
+                observed.clear();
+            } finally {
+                lock.release();
+                lockFile.close();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to save test durations to " + file, e);
+        }
+    }
+
+    private long average() {
+        if (durations.isEmpty()) {
+            return 0;
+        }
+        long total = 0;
+        for (Long duration : durations.values()) {
+            total += duration;
+        }
+        return total / durations.size();
+    }
+
+    private static Map<String, Long> read(File file) {
+        Map<String, Long> result = new HashMap<String, Long>();
+        if (!file.exists()) {
+            return result;
+        }
+        Properties props = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read test durations from " + file, e);
+        }
+        for (String key : props.stringPropertyNames()) {
+            try {
+                result.put(key, Long.valueOf(props.getProperty(key)));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed duration of " + key);
+            }
+        }
+        return result;
+    }
+
+    private static void write(File file, Map<String, Long> durations) throws IOException {
+        Properties props = new Properties();
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            props.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            props.store(out, "Test durations in ms");
+        } finally {
+            out.close();
+        }
+    }
+}
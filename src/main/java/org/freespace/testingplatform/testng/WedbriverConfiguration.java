@@ -1,23 +1,26 @@
 package org.freespace.testingplatform.testng;
 
-import javax.annotation.PreDestroy;
+import java.util.Collections;
 
 import org.freespace.testingplatform.config.Config;
-import org.freespace.testingplatform.webdriver.listneres.ListenerConfig;
-import org.freespace.testingplatform.webdriver.listneres.LoggingWebDriverEventListener;
-import org.freespace.testingplatform.webdriver.listneres.StorageCssErrorHandler;
-import org.freespace.testingplatform.webdriver.listneres.StorageJavaScriptErrorListener;
-import org.openqa.selenium.JavascriptExecutor;
-import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.firefox.FirefoxDriver;
-import org.openqa.selenium.htmlunit.HtmlUnitDriver;
-import org.openqa.selenium.ie.InternetExplorerDriver;
-import org.openqa.selenium.remote.CapabilityType;
-import org.openqa.selenium.remote.DesiredCapabilities;
-import org.openqa.selenium.support.events.EventFiringWebDriver;
+import org.freespace.testingplatform.webdriver.session.ConcurrencyController;
+import org.freespace.testingplatform.webdriver.session.LoginSnapshotCache;
+import org.freespace.testingplatform.webdriver.session.ManagedWebDriver;
+import org.freespace.testingplatform.webdriver.session.PooledWebDriver;
+import org.freespace.testingplatform.webdriver.session.RecyclePolicy;
+import org.freespace.testingplatform.webdriver.session.SessionReset;
+import org.freespace.testingplatform.webdriver.session.SessionWatchdog;
+import org.freespace.testingplatform.webdriver.session.WebDriverFactory;
+import org.freespace.testingplatform.webdriver.session.WebDriverPool;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.CustomScopeConfigurer;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+import org.springframework.context.annotation.ScopedProxyMode;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.SimpleThreadScope;
 
 
 
@@ -27,52 +30,69 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class WedbriverConfiguration {
 
+    public static final String MAXIMIZE_BROWSER_WINDOW = WebDriverFactory.MAXIMIZE_BROWSER_WINDOW;
+    public static final String THREAD_SCOPE = "thread";
+
     @Autowired
-    private WebDriver driver;
+    private WebDriverPool pool;
+
+    /**
+     * Registers the thread scope used by {@link #driver()}, so that every TestNG worker thread
+     * drives its own browser when tests run in parallel.
+     */
+    @Bean
+    public static CustomScopeConfigurer threadScopeConfigurer() {
+        CustomScopeConfigurer configurer = new CustomScopeConfigurer();
+        configurer.setScopes(Collections.<String, Object>singletonMap(THREAD_SCOPE, new SimpleThreadScope()));
+        return configurer;
+    }
 
-    private static final String HTMLUNIT = "htmlunit";
-    private static final String FIREFOX = "firefox";
-    private static final String IEXPLORER = "iexplorer";
-    public static final String MAXIMIZE_BROWSER_WINDOW = "if (window.screen) {window.moveTo(0, 0);window.resizeTo(window.screen.availWidth,window.screen.availHeight);};";
+    @Bean(destroyMethod = "shutdown")
+    public static WebDriverPool webDriverPool() {
+        RecyclePolicy recyclePolicy = new RecyclePolicy(Config.RECYCLE_COMMANDS, Config.RECYCLE_AGE * 60000L, Config.RECYCLE_HEAP);
+        ConcurrencyController concurrency = new ConcurrencyController(Config.CONCURRENCY_MIN, Config.CONCURRENCY_MAX,
+                Config.CONCURRENCY_LOAD, Config.CONCURRENCY_FREE_MEMORY, Config.CONCURRENCY_WAIT * 1000L);
+        return new WebDriverPool(new WebDriverFactory(), SessionReset.forName(Config.SESSION_RESET),
+                recyclePolicy, concurrency);
+    }
 
-    public
+    /**
+     * Starts the background browser launches once the context is refreshed, so that browser
+     * start-up overlaps with test data loading and the first test methods instead of blocking
+     * them, without creating beans before the container is ready to.
+     */
     @Bean
-    WebDriver driver() {
-        WebDriver driver;
-        if (HTMLUNIT.equals(Config.WEBDRIVER)) {
-            driver = new HtmlUnitDriver();
-            ((HtmlUnitDriver) driver).setJavascriptEnabled(true);
-            StorageJavaScriptErrorListener javaScriptErrorListener = new StorageJavaScriptErrorListener();
-            StorageCssErrorHandler cssErrorHandler = new StorageCssErrorHandler();
-            ListenerConfig.setJSErrorListenerToWebClient(driver, javaScriptErrorListener);
-            ListenerConfig.setCssErrorHandlerToWebClient(driver, cssErrorHandler);
-        } else if (FIREFOX.equals(Config.WEBDRIVER)) {
-            driver = new FirefoxDriver();
-            executeJavascript(driver, MAXIMIZE_BROWSER_WINDOW);
-        } else if (IEXPLORER.equals(Config.WEBDRIVER)) {
-            DesiredCapabilities ieCapabilities = DesiredCapabilities.internetExplorer();
-            ieCapabilities.setCapability(InternetExplorerDriver.INTRODUCE_FLAKINESS_BY_IGNORING_SECURITY_DOMAINS, true);
-            ieCapabilities.setCapability(CapabilityType.ForSeleniumServer.ENSURING_CLEAN_SESSION, true);
-            driver = new InternetExplorerDriver(ieCapabilities);
-        } else {
-            throw new RuntimeException("You must define webdriver type");
-        }
-        LoggingWebDriverEventListener eventListener = new LoggingWebDriverEventListener();
-        return new EventFiringWebDriver(driver).register(eventListener);
+    public ApplicationListener<ContextRefreshedEvent> webDriverPrelauncher() {
+        return new ApplicationListener<ContextRefreshedEvent>() {
+            public void onApplicationEvent(ContextRefreshedEvent event) {
+                pool.prewarm(Config.POOL_SIZE);
+            }
+        };
     }
 
-    private static Object executeJavascript(WebDriver driver, String script) {
-        JavascriptExecutor js = (JavascriptExecutor) driver;
-        return js.executeScript(script);
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public SessionWatchdog sessionWatchdog() {
+        return new SessionWatchdog(pool, Config.COMMAND_TIMEOUT * 1000L);
     }
 
-    @PreDestroy
-    public void cleanUp() {
-        try {
-            driver.quit();
-        } catch (Throwable e) {
-            e.printStackTrace();
-        }
+    @Bean
+    public LoginSnapshotCache loginSnapshotCache() {
+        return new LoginSnapshotCache(Config.BASE_URL, Config.LOGIN_SNAPSHOT_TTL * 1000L);
+    }
+
+    /**
+     * Injected as a proxy: every call is routed to the driver of the calling thread, which
+     * borrows its own session from the pool. Thread scope has no destruction callbacks,
+     * the sessions are quit when the pool shuts down.
+     * <p/>
+     * Nothing is borrowed until the first command, which only waits for a browser that is
+     * still being launched in the background.
+     */
+    public
+    @Bean
+    @Scope(value = THREAD_SCOPE, proxyMode = ScopedProxyMode.INTERFACES)
+    ManagedWebDriver driver() {
+        return PooledWebDriver.create(pool);
     }
 
-}
\ No newline at end of file
+}
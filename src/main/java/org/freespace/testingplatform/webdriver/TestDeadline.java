@@ -0,0 +1,136 @@
+package org.freespace.testingplatform.webdriver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time budget of the test running on the current thread, shared by all of its waits, retry
+ * loops and driver commands.
+ * <p/>
+ * Each of them clips its own timeout with {@link #limit(long)} and reports what it spent
+ * with {@link #enter()} / {@link #exit(String, long)}. Once the budget is used up,
+ * {@link #check()} fails with a {@link TestDeadlineExceededException} listing where the
+ * time went, so a broken test stops after its budget instead of after every one of its
+ * waits has timed out in turn.
+ * <p/>
+ * Threads without a deadline, and tests with a budget of 0, are not limited.
+ */
+public class TestDeadline {
+
+    private static final int BREAKDOWN_SIZE = 10;
+    private static final ThreadLocal<TestDeadline> current = new ThreadLocal<TestDeadline>();
+
+    private final String test;
+    private final long budgetMillis;
+    private final long startedAt;
+    private final Map<String, long[]> spent = new LinkedHashMap<String, long[]>();
+    private int depth;
+
+    private TestDeadline(String test, long budgetMillis) {
+        this.test = test;
+        this.budgetMillis = budgetMillis;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    public static void start(String test, long budgetMillis) {
+        if (budgetMillis > 0) {
+            current.set(new TestDeadline(test, budgetMillis));
+        } else {
+            current.remove();
+        }
+    }
+
+    public static void clear() {
+        current.remove();
+    }
+
+    /**
+     * @return the timeout clipped to what is left of the budget
+     * @throws TestDeadlineExceededException if nothing is left
+     */
+    public static long limit(long timeoutMillis) {
+        TestDeadline deadline = current.get();
+        if (deadline == null) {
+            return timeoutMillis;
+        }
+        deadline.failIfExceeded();
+        return Math.min(timeoutMillis, deadline.remaining());
+    }
+
+    /**
+     * @throws TestDeadlineExceededException if the budget is used up
+     */
+    public static void check() {
+        TestDeadline deadline = current.get();
+        if (deadline != null) {
+            deadline.failIfExceeded();
+        }
+    }
+
+    /**
+     * Marks the start of an activity to be reported by {@link #exit(String, long)}. Only the
+     * outermost activity is accounted, a driver command issued by a wait counts as part of
+     * the wait.
+     *
+     * @return the start time to pass to {@link #exit(String, long)}
+     */
+    public static long enter() {
+        TestDeadline deadline = current.get();
+        if (deadline != null) {
+            deadline.depth++;
+        }
+        return System.currentTimeMillis();
+    }
+
+    public static void exit(String activity, long startedAt) {
+        TestDeadline deadline = current.get();
+        if (deadline != null && --deadline.depth == 0) {
+            long[] total = deadline.spent.get(activity);
+            if (total == null) {
+                total = new long[2];
+                deadline.spent.put(activity, total);
+            }
+            total[0] += System.currentTimeMillis() - startedAt;
+            total[1]++;
+        }
+    }
+
+    private long remaining() {
+        return budgetMillis - (System.currentTimeMillis() - startedAt);
+    }
+
+    private void failIfExceeded() {
+        if (remaining() <= 0) {
+            throw new TestDeadlineExceededException(test + " used up its budget of " + budgetMillis / 1000 + " s"
+                    + breakdown());
+        }
+    }
+
+    private String breakdown() {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(spent.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            public int compare(Map.Entry<String, long[]> one, Map.Entry<String, long[]> two) {
+                return one.getValue()[0] > two.getValue()[0] ? -1 : (one.getValue()[0] < two.getValue()[0] ? 1 : 0);
+            }
+        });
+        StringBuilder result = new StringBuilder();
+        long accounted = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            long[] total = entries.get(i).getValue();
+            accounted += total[0];
+            if (i < BREAKDOWN_SIZE) {
+                result.append("\n\t").append(total[0]).append(" ms in ").append(total[1]).append(" x ")
+                        .append(entries.get(i).getKey());
+            }
+        }
+        if (entries.size() > BREAKDOWN_SIZE) {
+            result.append("\n\t... ").append(entries.size() - BREAKDOWN_SIZE).append(" more");
+        }
+        result.append("\n\t").append(System.currentTimeMillis() - startedAt - accounted).append(" ms in the test itself");
+        return result.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package org.freespace.testingplatform.webdriver;
+
+/**
+ * Thrown by any wait, retry or driver command of a test that has used up its time budget.
+ *
+ * @see TestDeadline
+ */
+public class TestDeadlineExceededException extends RuntimeException {
+
+    public TestDeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -1,32 +1,70 @@
 package org.freespace.testingplatform.webdriver;
 
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.freespace.testingplatform.config.Config;
+import org.freespace.testingplatform.webdriver.utils.ElementSnapshot;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
 import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
-
+/**
+ * Logs page actions to the "Action" logger at DEBUG level when {@code verbose} is on.
+ * <p/>
+ * Nothing is computed unless the message is going to be written: describing an element
+ * takes a browser round trip, which is only paid when the logger is enabled and then only
+ * once per element handle.
+ */
 public class WebdriverLogger {
     private static final Logger log = Logger.getLogger("Action");
+    private static final Map<WebElement, String> descriptions =
+            Collections.synchronizedMap(new WeakHashMap<WebElement, String>());
+
+    public boolean isVerbose() {
+        return Config.VERBOSE && log.isDebugEnabled();
+    }
 
     public void verbose(String type, WebElement webElement) {
-        verbose(type, elementToString(webElement), null);
+        if (isVerbose()) {
+            verbose(type, elementToString(webElement), null);
+        }
     }
 
     public void verbose(String type, WebElement webElement, String text) {
-        verbose(type, elementToString(webElement), text);
+        if (isVerbose()) {
+            verbose(type, elementToString(webElement), text);
+        }
     }
 
     public void verbose(String type, By by) {
-        verbose(type, by.toString(), null);
+        if (isVerbose()) {
+            verbose(type, by.toString(), null);
+        }
     }
 
     public void verbose(String type, By one, By two) {
-        verbose(type, one.toString() + " - " + two.toString(), null);
+        if (isVerbose()) {
+            verbose(type, one.toString() + " - " + two.toString(), null);
+        }
+    }
+
+    public void verbose(String type, By... locators) {
+        if (isVerbose()) {
+            verbose(type, StringUtils.join(locators, " - "), null);
+        }
     }
 
     public void verbose(String type, String element, String text) {
+        if (!isVerbose()) {
+            return;
+        }
         String msg =
                 "\n\ttype:    " + type +
                         "\n\telement: " + element;
@@ -36,15 +74,44 @@ public class WebdriverLogger {
         verbose(msg);
     }
 
+    /**
+     * Describes the element by tag, id and name, read in one call where the driver allows.
+     * The description is remembered for the element handle; PageFactory proxies are not
+     * remembered, because using them as keys would look the element up.
+     */
     public String elementToString(WebElement webElement) {
-        return "tag='" + webElement.getTagName() + "', " +
-                "id='" + webElement.getAttribute("id") + "', " +
-                "name='" + webElement.getAttribute("name") + "'";
+        boolean cacheable = !Proxy.isProxyClass(webElement.getClass());
+        if (cacheable) {
+            String description = descriptions.get(webElement);
+            if (description != null) {
+                return description;
+            }
+        }
+        String description = describe(webElement);
+        if (cacheable) {
+            descriptions.put(webElement, description);
+        }
+        return description;
     }
 
     public void verbose(String msg) {
-        if (Config.VERBOSE) {
+        if (isVerbose()) {
             log.debug(msg);
         }
     }
-}
\ No newline at end of file
+
+    private static String describe(WebElement webElement) {
+        WebDriver driver = JsUtils.driverOf(webElement);
+        if (driver == null) {
+            return "tag='" + webElement.getTagName() + "', " +
+                    "id='" + webElement.getAttribute("id") + "', " +
+                    "name='" + webElement.getAttribute("name") + "'";
+        }
+        List<ElementSnapshot> read = JsUtils.readAll(driver, Collections.singletonList(webElement),
+                JsUtils.TAG_NAME, JsUtils.attribute("id"), JsUtils.attribute("name"));
+        ElementSnapshot element = read.get(0);
+        return "tag='" + element.getTagName() + "', " +
+                "id='" + element.getAttribute("id") + "', " +
+                "name='" + element.getAttribute("name") + "'";
+    }
+}
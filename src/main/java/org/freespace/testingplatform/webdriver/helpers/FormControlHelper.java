@@ -0,0 +1,90 @@
+package org.freespace.testingplatform.webdriver.helpers;
+
+import java.util.List;
+
+import org.openqa.selenium.WebElement;
+
+/**
+ * Helper for reading a single control of an HTML form, as captured by 
+ * {@link FormHelper#snapshot()}. 
+ * <p>
+ * All values are those at the time of the snapshot. The WebElement is only looked up 
+ * when {@link #getElement()} is called. 
+ * @see FormHelper
+ */
+public class FormControlHelper {
+
+  FormControlHelper(FormHelper form, int index, List<Object> values) {
+    _form = form;
+    _index = index;
+    _tagName = (String) values.get(0);
+    _type = (String) values.get(1);
+    _name = (String) values.get(2);
+    _id = (String) values.get(3);
+    _value = values.get(4);
+    _checked = (Boolean) values.get(5);
+    _disabled = (Boolean) values.get(6);
+  }
+
+  /**
+   * Get the WebElement representing this control.
+   * @return the underlying WebElement
+   */
+  public WebElement getElement() {
+    return _form.findControl(_index);
+  }
+
+  /**
+   * @return The tag name in lower case: input, select, textarea or button. 
+   */
+  public String getTagName() { return _tagName; }
+
+  /**
+   * @return The type in lower case, e.g. text, radio, checkbox, select-one, textarea. 
+   */
+  public String getType() { return _type; }
+
+  public String getName() { return _name; }
+
+  public String getId() { return _id; }
+
+  /**
+   * @return The current value of the control; for a select list, the value of the 
+   * first selected option, or null. 
+   */
+  public String getValue() {
+    if (_value instanceof List) {
+      List<?> selected = (List<?>) _value;
+      return selected.isEmpty() ? null : (String) selected.get(0);
+    }
+    return (String) _value;
+  }
+
+  /**
+   * @return The values of the selected options of a select list, zero length for 
+   * other controls. 
+   */
+  public String[] getSelectedValues() {
+    if (_value instanceof List) {
+      return ((List<?>) _value).toArray(new String[0]);
+    }
+    return new String[0];
+  }
+
+  /**
+   * @return True if this is a checked checkbox or radio button. 
+   */
+  public boolean isChecked() { return _checked; }
+
+  public boolean isDisabled() { return _disabled; }
+
+  private FormHelper _form;
+  private int _index;
+  private String _tagName;
+  private String _type;
+  private String _name;
+  private String _id;
+  private Object _value;
+  private boolean _checked;
+  private boolean _disabled;
+}
@@ -17,9 +17,19 @@
 
 package org.freespace.testingplatform.webdriver.helpers;
 
+import org.freespace.testingplatform.webdriver.utils.JsForms;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.By;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
 
+import java.beans.PropertyDescriptor;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
 import java.util.List;
 
@@ -42,7 +52,13 @@ import java.util.List;
  *   RadioGroupHelper group = form.getRadioGroup("primary_colors");
  *   assertNotNull(group);
  * </pre>
+ * A whole form can be read with {@link #snapshot()} and filled with 
+ * {@link #fillForm(Map)} or {@link #fillForm(Object)}, in one script call each:
+ * <pre>
+ *   form.fillForm(Collections.singletonMap("primary_colors", "b"));
+ * </pre>
  * @see RadioGroupHelper
+ * @see FormControlHelper
  */
 public class FormHelper {
   
@@ -53,6 +69,17 @@ public class FormHelper {
   public FormHelper(WebElement element) {
     _element = element;
   }
+  
+  /**
+   * Create a FormHelper that runs its scripts with the given driver, for form elements 
+   * that do not tell the driver they were found with. 
+   * @param element A WebElement corresponding to the HTML FORM element.
+   * @param driver The driver the form was found with. 
+   */
+  public FormHelper(WebElement element, WebDriver driver) {
+    _element = element;
+    _driver = driver;
+  }
 
   /**
    * Get the WebElement representing this form.
@@ -68,6 +95,15 @@ public class FormHelper {
    * @return A {@link RadioGroupHelper} for the radio button group with the given name.
    */
   public RadioGroupHelper getRadioGroup(String groupName) {
+    if (_driver != null || JsUtils.driverOf(_element) != null) {
+      Vector<RadioButtonHelper> buttons = new Vector<RadioButtonHelper>();
+      for (FormControlHelper control : snapshot()) {
+        if (control.getType().equals("radio") && control.getName().equals(groupName)) {
+          buttons.add(new RadioButtonHelper(control));
+        }
+      }
+      return buttons.isEmpty() ? null : new RadioGroupHelper(buttons.toArray(new RadioButtonHelper[0]));
+    }
     List<WebElement> inputs = _element.findElements(By.tagName("input"));
     Vector<WebElement> elements = new Vector<WebElement>();
     for (WebElement input : inputs) {
@@ -84,5 +120,69 @@ public class FormHelper {
       return new RadioGroupHelper(elements);
   }
   
+  /**
+   * Read type, name, id, value, checked and disabled state of every control of the form 
+   * (INPUT, SELECT, TEXTAREA and BUTTON elements) in a single script call. 
+   * @return Helpers for the controls, in document order. 
+   */
+  public FormControlHelper[] snapshot() {
+    List<List<Object>> controls = JsForms.readControls(driver(), _element);
+    FormControlHelper[] result = new FormControlHelper[controls.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new FormControlHelper(this, i, controls.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Set the controls of the form in a single script call, firing input and change events 
+   * on every control that changed. Keys are control names, or ids for controls without a 
+   * name; see {@link JsForms#fill(WebDriver, WebElement, Map)} for how values are applied. 
+   * @param values The values by control name. 
+   * @return True if a control was found and set for every key. 
+   */
+  public boolean fillForm(Map<String, ?> values) {
+    return JsForms.fill(driver(), _element, values).isEmpty();
+  }
+
+  /**
+   * Set the controls of the form from the properties of a bean, a control for each 
+   * non-null property of a simple type or collection, named like the property. 
+   * @param bean The bean holding the values. 
+   * @return True if a control was found and set for every property. 
+   */
+  public boolean fillForm(Object bean) {
+    BeanWrapper wrapper = new BeanWrapperImpl(bean);
+    Map<String, Object> values = new LinkedHashMap<String, Object>();
+    for (PropertyDescriptor property : wrapper.getPropertyDescriptors()) {
+      Class<?> type = property.getPropertyType();
+      if (property.getReadMethod() == null || type == null || "class".equals(property.getName()) || 
+          !(BeanUtils.isSimpleProperty(type) || Collection.class.isAssignableFrom(type))) {
+        continue;
+      }
+      Object value = wrapper.getPropertyValue(property.getName());
+      if (value != null) {
+        values.put(property.getName(), value);
+      }
+    }
+    return fillForm(values);
+  }
+
+  /**
+   * Look up the WebElement of a control, by its position in {@link #snapshot()}. 
+   */
+  WebElement findControl(int index) {
+    return _element.findElements(JsForms.CONTROLS).get(index);
+  }
+
+  private WebDriver driver() {
+    WebDriver driver = _driver != null ? _driver : JsUtils.driverOf(_element);
+    if (driver == null) {
+      throw new IllegalArgumentException("The form does not tell its driver, create the FormHelper with one");
+    }
+    return driver;
+  }
+
   private WebElement _element;
+  private WebDriver _driver;
 }
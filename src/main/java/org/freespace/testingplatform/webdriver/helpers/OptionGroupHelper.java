@@ -1,9 +1,11 @@
 package org.freespace.testingplatform.webdriver.helpers;
 
-import java.util.List;
 import java.util.Vector;
 
+import org.freespace.testingplatform.webdriver.utils.JsSelects;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
 import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
 /**
@@ -57,14 +59,31 @@ import org.openqa.selenium.WebElement;
 public class OptionGroupHelper {
 
     private Vector<OptionHelper> _options;
-    private List<WebElement> _elements;
     private WebElement _group;
     private boolean _isMultiSelect;
+    private WebElement _select;
+    private int _index;
+    private String _label;
 
     public OptionGroupHelper(WebElement group, boolean isMultiSelect) {
         _group = group;
         _isMultiSelect = isMultiSelect;
-        _elements = _group.findElements(By.tagName("option"));
+    }
+
+    /**
+     * Create an OptionGroupHelper while a {@link SelectHelper} reads its options in bulk.
+     * The WebElement is only looked up when {@link #getElement()} is called.
+     */
+    OptionGroupHelper(WebElement select, int index, String label, boolean isMultiSelect) {
+        _select = select;
+        _index = index;
+        _label = label;
+        _isMultiSelect = isMultiSelect;
+        _options = new Vector<OptionHelper>();
+    }
+
+    void addOption(OptionHelper option) {
+        _options.add(option);
     }
 
     /**
@@ -73,13 +92,16 @@ public class OptionGroupHelper {
      * @return the underlying WebElement
      */
     public WebElement getElement() {
+        if (_group == null) {
+            _group = _select.findElements(By.tagName("optgroup")).get(_index);
+        }
         return _group;
     }
 
     private void populateOptions() {
         if (_options == null) {
             _options = new Vector<OptionHelper>();
-            for (WebElement element : _elements) {
+            for (WebElement element : getElement().findElements(By.tagName("option"))) {
                 OptionHelper helper = new OptionHelper(element);
                 _options.add(helper);
             }
@@ -92,7 +114,7 @@ public class OptionGroupHelper {
      * @return True if disabled.
      */
     public boolean isDisabled() {
-        String disabled = _group.getAttribute("disabled");
+        String disabled = getElement().getAttribute("disabled");
         return disabled != null && disabled.equals("true");
     }
 
@@ -145,6 +167,11 @@ public class OptionGroupHelper {
      *         of selections can be made).
      */
     public boolean selectValues(String[] selections) {
+        WebDriver driver = JsUtils.driverOf(getElement());
+        if (driver != null) {
+            _options = null;
+            return JsSelects.select(driver, getElement(), "value", selections);
+        }
         populateOptions();
         boolean success = true;
         for (OptionHelper option : _options) {
@@ -169,7 +196,10 @@ public class OptionGroupHelper {
      * @return The name of the select list.
      */
     public String getLabel() {
-        String name = _group.getAttribute("label");
+        if (_label != null) {
+            return _label;
+        }
+        String name = getElement().getAttribute("label");
         return name;
     }
 }
@@ -17,6 +17,8 @@
 
 package org.freespace.testingplatform.webdriver.helpers;
 
+import org.freespace.testingplatform.webdriver.utils.CachingWebElement;
+import org.openqa.selenium.By;
 import org.openqa.selenium.WebElement;
 
 /**
@@ -65,7 +67,21 @@ public class OptionHelper {
    * @param option A WebElement corresponding to the HTML OPTION element.
    */
   public OptionHelper(WebElement option) {
-    _option = option;
+    _option = CachingWebElement.wrap(option);
+  }
+  
+  /**
+   * Create an OptionHelper from values read in bulk by a {@link SelectHelper}. The 
+   * WebElement is only looked up when {@link #getElement()} is called. 
+   */
+  OptionHelper(WebElement select, int index, String text, String value, String id, boolean selected) {
+    _select = select;
+    _index = index;
+    _snapshot = true;
+    _text = text;
+    _value = value;
+    _id = id;
+    _selected = selected;
   }
   
   /**
@@ -73,20 +89,26 @@ public class OptionHelper {
    * @return the underlying WebElement
    */
   public WebElement getElement() {
-    return _option;
+    if (_option == null) {
+      _option = _select.findElements(By.tagName("option")).get(_index);
+    }
+    return CachingWebElement.unwrap(_option);
   }
   
   /**
    * Get the text value of the option. 
    * @return The text value. 
    */
-  public String getText() { return _option.getText(); }
+  public String getText() { return _snapshot ? _text : _option.getText(); }
   
   /**
-   * Is this option selected?
+   * Is this option selected? For an option read in bulk, this is the status at the 
+   * time it was read. 
    * @return True if selected. 
    */
   public boolean isSelected() { 
+    if (_snapshot) 
+      return _selected;
     String selected = _option.getAttribute("selected");
     return selected != null && selected.equals("true"); 
   }
@@ -95,13 +117,13 @@ public class OptionHelper {
    * Get the 'value' attribute of this option. 
    * @return The 'value' attribute. 
    */
-  public String getValue() { return _option.getAttribute("value"); }
+  public String getValue() { return _snapshot ? _value : _option.getAttribute("value"); }
   
   /**
    * Get the 'id' attribute of this option. 
    * @return The 'id' attribute. 
    */
-  public String getId() { return _option.getAttribute("id"); }
+  public String getId() { return _snapshot ? _id : _option.getAttribute("id"); }
   
   /**
    * Set the selection status of this option. If the list is single select 
@@ -111,14 +133,23 @@ public class OptionHelper {
    * @return Always true. 
    */
   public boolean setSelected(boolean selected) { 
+    WebElement option = getElement();
     if (selected) 
-      _option.setSelected();
+      option.setSelected();
     else {
-      _option.setSelected();
-      _option.toggle();
+      option.setSelected();
+      option.toggle();
     }
+    _snapshot = false;
     return true;
   }
   
   private WebElement _option;
+  private WebElement _select;
+  private int _index;
+  private boolean _snapshot = false;
+  private String _text;
+  private String _value;
+  private String _id;
+  private boolean _selected;
 }
@@ -16,6 +16,7 @@
 
 package org.freespace.testingplatform.webdriver.helpers;
 
+import org.freespace.testingplatform.webdriver.utils.CachingWebElement;
 import org.openqa.selenium.WebElement;
 
 /**
@@ -53,9 +54,20 @@ import org.openqa.selenium.WebElement;
 public class RadioButtonHelper {
 
     private WebElement _element;
+    private FormControlHelper _control;
+    private Boolean _checked;
 
     RadioButtonHelper(WebElement element) {
-        _element = element;
+        _element = CachingWebElement.wrap(element);
+    }
+
+    /**
+     * Create a RadioButtonHelper from a form snapshot. Id, value and checked state come
+     * from the snapshot, the WebElement is only looked up when needed.
+     */
+    RadioButtonHelper(FormControlHelper control) {
+        _control = control;
+        _checked = control.isChecked();
     }
 
     /**
@@ -64,7 +76,10 @@ public class RadioButtonHelper {
      * @return the underlying WebElement
      */
     public WebElement getElement() {
-        return _element;
+        if (_element == null) {
+            _element = _control.getElement();
+        }
+        return CachingWebElement.unwrap(_element);
     }
 
     /**
@@ -73,7 +88,7 @@ public class RadioButtonHelper {
      * @return Value of the button's 'id' attribute, or null.
      */
     public String getId() {
-        return _element.getAttribute("id");
+        return _control != null ? _control.getId() : _element.getAttribute("id");
     }
 
     /**
@@ -82,7 +97,7 @@ public class RadioButtonHelper {
      * @return Value of the button's 'value' attribute, or null.
      */
     public String getValue() {
-        return _element.getAttribute("value");
+        return _control != null ? _control.getValue() : _element.getAttribute("value");
     }
 
     /**
@@ -91,6 +106,9 @@ public class RadioButtonHelper {
      * @return True if the button is checked.
      */
     public boolean isChecked() {
+        if (_checked != null) {
+            return _checked;
+        }
         String checked = _element.getAttribute("checked");
         return checked != null && checked.equals("true");
     }
@@ -101,9 +119,19 @@ public class RadioButtonHelper {
      * @return Always true.
      */
     public boolean select() {
-        _element.setSelected();
+        getElement().setSelected();
         return true;
     }
 
+    /**
+     * Keep the checked state of a snapshot button in step with selections made through
+     * its group.
+     */
+    void setChecked(boolean checked) {
+        if (_checked != null) {
+            _checked = checked;
+        }
+    }
+
 
 }
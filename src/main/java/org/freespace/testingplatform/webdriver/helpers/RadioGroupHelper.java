@@ -19,6 +19,7 @@ package org.freespace.testingplatform.webdriver.helpers;
 
 import org.openqa.selenium.WebElement;
 
+import java.util.Arrays;
 import java.util.Vector;
 
 /**
@@ -60,6 +61,13 @@ public class RadioGroupHelper {
     _elements = elements;
   }
   
+  /**
+   * Create a RadioGroupHelper from buttons read by {@link FormHelper#snapshot()}.
+   */
+  RadioGroupHelper(RadioButtonHelper[] buttons) {
+    _buttons = new Vector<RadioButtonHelper>(Arrays.asList(buttons));
+  }
+  
   private void populateButtons() {
     if (_buttons == null) {
       _buttons = new Vector<RadioButtonHelper>();
@@ -126,7 +134,7 @@ public class RadioGroupHelper {
     populateButtons();
     for (RadioButtonHelper button : _buttons) {
       if (button.getId().equals(id)) {
-        return button.select();
+        return select(button);
       }
     }
     return false;
@@ -141,7 +149,7 @@ public class RadioGroupHelper {
     populateButtons();
     for (RadioButtonHelper button : _buttons) {
       if (button.getValue().equals(value)) {
-        return button.select();
+        return select(button);
       }
     }
     return false;
@@ -159,6 +167,14 @@ public class RadioGroupHelper {
     return null;
   }
   
+  private boolean select(RadioButtonHelper selected) {
+    boolean success = selected.select();
+    for (RadioButtonHelper button : _buttons) {
+      button.setChecked(button == selected);
+    }
+    return success;
+  }
+  
   private Vector<RadioButtonHelper> _buttons; 
   private Vector<WebElement> _elements;
 }
@@ -17,6 +17,10 @@
 
 package org.freespace.testingplatform.webdriver.helpers;
 
+import org.freespace.testingplatform.webdriver.utils.CachingWebElement;
+import org.freespace.testingplatform.webdriver.utils.JsSelects;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.By;
@@ -75,6 +79,10 @@ import java.util.List;
  *       primaryColors.getOptionText()
  *       );
  * </pre>
+ * Options are read in a single script call the first time they are needed, and selection 
+ * changes are applied in a single call as well (see {@link JsSelects}), so the helper 
+ * stays fast for lists with thousands of options. Option helpers obtained before a 
+ * selection change keep the selection status they were read with. 
  * @see FormHelper
  * @see OptionHelper
  * @see OptionGroupHelper
@@ -87,8 +95,7 @@ public class SelectHelper {
    * @param select A WebElement corresponding to the HTML SELECT element.
    */
   public SelectHelper(WebElement select) {
-    _select = select;
-    _elements = _select.findElements(By.tagName("option"));
+    _select = CachingWebElement.wrap(select);
   }
   
   /**
@@ -96,25 +103,31 @@ public class SelectHelper {
    * @return the underlying WebElement
    */
   public WebElement getElement() {
-    return _select;
+    return CachingWebElement.unwrap(_select);
   }
   
   private void populateOptions() {
     if (_options == null) {
       _options = new Vector<OptionHelper>();
       _groups = new Vector<OptionGroupHelper>();
+      WebDriver driver = JsUtils.driverOf(_select);
+      if (driver != null) {
+        readOptions(driver);
+        return;
+      }
       List<WebElement> groups = _select.findElements(By.tagName("optgroup"));
       if (groups.size() > 0) {
         // there are groups
+        boolean multiSelect = isMultiSelect();
         for (WebElement group : groups) {
-          OptionGroupHelper helper = new OptionGroupHelper(group,isMultiSelect());
+          OptionGroupHelper helper = new OptionGroupHelper(group, multiSelect);
           _groups.add(helper);
           for (OptionHelper opt : helper.getOptions()) {
             _options.add(opt);
           }
         }
       } else {
-        for (WebElement element : _elements) {
+        for (WebElement element : _select.findElements(By.tagName("option"))) {
           OptionHelper helper = new OptionHelper(element);
           _options.add(helper);
         }
@@ -122,11 +135,36 @@ public class SelectHelper {
     }
   }
   
+  private void readOptions(WebDriver driver) {
+    List<Object> snapshot = JsSelects.readOptions(driver, _select);
+    _isMultiSelect = (Boolean) snapshot.get(0);
+    List<?> options = (List<?>) snapshot.get(1);
+    OptionGroupHelper group = null;
+    int groupIndex = -1;
+    for (int i = 0; i < options.size(); i++) {
+      List<?> option = (List<?>) options.get(i);
+      OptionHelper helper = new OptionHelper(_select, i, (String) option.get(0), (String) option.get(1), 
+          (String) option.get(2), (Boolean) option.get(3));
+      _options.add(helper);
+      int index = ((Number) option.get(4)).intValue();
+      if (index >= 0 && index != groupIndex) {
+        groupIndex = index;
+        group = new OptionGroupHelper(_select, index, (String) option.get(5), _isMultiSelect);
+        _groups.add(group);
+      }
+      if (index >= 0) {
+        group.addOption(helper);
+      }
+    }
+  }
+  
   /**
    * Does this select list allow multiple selections?
    * @return True if multiple selections are allowed. 
    */
   public boolean isMultiSelect() {
+    if (_isMultiSelect != null) 
+      return _isMultiSelect;
     String multiple = _select.getAttribute("multiple");
     return multiple != null && multiple.equals("true"); 
   }
@@ -218,7 +256,13 @@ public class SelectHelper {
    * of selections can be made). 
    */
   public boolean selectValues(String[] selections) {
+    WebDriver driver = JsUtils.driverOf(_select);
+    if (driver != null) {
+      _options = null;
+      return JsSelects.select(driver, _select, "value", selections);
+    }
     populateOptions();
+    boolean multiSelect = isMultiSelect();
     boolean success = true;
     for (OptionHelper option : _options) {
       // if this is an option to select, select it, otherwise deselect it
@@ -229,7 +273,7 @@ public class SelectHelper {
         } else {
           // only deselect if it's mutli select; otherwise toggle doesn't work but deselecting 
           // is unnecessary: this means you can't clear a single select
-          success = success && (!isMultiSelect() || option.setSelected(false));
+          success = success && (!multiSelect || option.setSelected(false));
         }
       }
     }
@@ -243,7 +287,13 @@ public class SelectHelper {
    * of selections can be made). 
    */
   public boolean selectIds(String[] selections) {
+    WebDriver driver = JsUtils.driverOf(_select);
+    if (driver != null) {
+      _options = null;
+      return JsSelects.select(driver, _select, "id", selections);
+    }
     populateOptions();
+    boolean multiSelect = isMultiSelect();
     boolean success = true;
     for (OptionHelper option : _options) {
       // if this is an option to select, select it, otherwise deselect it
@@ -254,7 +304,7 @@ public class SelectHelper {
         } else {
           // only deselect if it's mutli select; otherwise toggle doesn't work but deselecting 
           // is unnecessary: this means you can't clear a single select
-          success = success && (!isMultiSelect() || option.setSelected(false));
+          success = success && (!multiSelect || option.setSelected(false));
         }
       }
     }
@@ -300,6 +350,6 @@ public class SelectHelper {
   
   private Vector<OptionHelper> _options;
   private Vector<OptionGroupHelper> _groups;
-  private List<WebElement> _elements;
+  private Boolean _isMultiSelect;
   private WebElement _select;
 }
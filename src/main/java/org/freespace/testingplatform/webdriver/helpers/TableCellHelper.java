@@ -56,11 +56,31 @@ public class TableCellHelper {
     _isHeader = cell.getTagName().equalsIgnoreCase("th");
   }
   
+  /**
+   * Create a TableCellHelper from values read by {@link TableHelper#snapshot()}. The 
+   * WebElement is only looked up when {@link #getElement()} is called.
+   */
+  TableCellHelper(TableHelper table, int row, int column, String tag, String text, String id, 
+      int columnSpan, int rowSpan) {
+    _table = table;
+    _row = row;
+    _column = column;
+    _isHeader = tag.equalsIgnoreCase("th");
+    _snapshot = true;
+    _text = text;
+    _id = id;
+    _columnSpan = columnSpan;
+    _rowSpan = rowSpan;
+  }
+  
   /**
    * Get the WebElement representing this cell.
    * @return the underlying WebElement
    */
   public WebElement getElement() {
+    if (_cell == null) {
+      _cell = _table.findCell(_row, _column);
+    }
     return _cell;
   }
   
@@ -68,25 +88,27 @@ public class TableCellHelper {
    * Get the text (contents) of this table cell.  
    * @return Cell contents. 
    */
-  public String getText() { return _cell.getText(); }
+  public String getText() { return _snapshot ? _text : _cell.getText(); }
   
   /**
    * Get the value of the 'id' attribute of this table cell.  
    * @return Value of 'id' attribute. 
    */
-  public String getId() { return _cell.getAttribute("id"); }
+  public String getId() { return _snapshot ? _id : _cell.getAttribute("id"); }
   
   /**
    * Get the value of the 'colspan' attribute of this table cell.  
    * @return Value of 'colspan' attribute. 
    */
-  public int getColumnSpan() { return Integer.parseInt(_cell.getAttribute("colspan")); }
+  public int getColumnSpan() { 
+    return _snapshot ? _columnSpan : Integer.parseInt(_cell.getAttribute("colspan")); 
+  }
   
   /**
    * Get the value of the 'rowspan' attribute of this table cell.  
    * @return Value of 'rowspan' attribute. 
    */
-  public int getRowSpan() { return Integer.parseInt(_cell.getAttribute("rowspan")); }
+  public int getRowSpan() { return _snapshot ? _rowSpan : Integer.parseInt(_cell.getAttribute("rowspan")); }
   
   /**
    * Determine whether this was a TH element (true) or a TR element (false). 
@@ -96,4 +118,12 @@ public class TableCellHelper {
   
   private boolean _isHeader = false;
   private WebElement _cell;
+  private boolean _snapshot = false;
+  private TableHelper _table;
+  private int _row;
+  private int _column;
+  private String _text;
+  private String _id;
+  private int _columnSpan;
+  private int _rowSpan;
 }
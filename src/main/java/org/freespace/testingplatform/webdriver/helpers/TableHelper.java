@@ -19,7 +19,10 @@ package org.freespace.testingplatform.webdriver.helpers;
 
 import java.util.List;
 
+import org.freespace.testingplatform.webdriver.utils.DomGeneration;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
 import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
 import java.util.Vector;
@@ -43,6 +46,8 @@ import java.util.Vector;
  *   assertEquals(3, table.getRowCount())
  *   TableCellHelper[][] cells = table.getCells();
  * </pre>
+ * For large tables use {@link #snapshot()}, which reads the whole table in one call, 
+ * or {@link #query()} to fetch only the rows and columns of interest.
  * @see TableCellHelper
  */
 
@@ -56,6 +61,17 @@ public class TableHelper {
     _table = table;
   }
   
+  /**
+   * Create a TableHelper that runs its scripts with the given driver, for table elements 
+   * that do not tell the driver they were found with. 
+   * @param table A WebElement corresponding to the HTML TABLE element.
+   * @param driver The driver the table was found with. 
+   */
+  public TableHelper(WebElement table, WebDriver driver) {
+    _table = table;
+    _driver = driver;
+  }
+  
   /**
    * Get the WebElement representing this table.
    * @return the underlying WebElement
@@ -92,6 +108,53 @@ public class TableHelper {
     return rows.toArray(new TableCellHelper[0][0]);
   }
   
+  /**
+   * Get all the cells in the table, like {@link #getCells()}, but read in a single script 
+   * call: tag, text, id, column span and row span of every cell are copied into the 
+   * helpers, and each cell's WebElement is only looked up if asked for.
+   * <p>
+   * The snapshot does not follow later changes to the table. Cell texts are the rendered 
+   * texts of the cells as the browser reports them, which may differ from 
+   * WebElement.getText() in whitespace. Falls back to {@link #getCells()} when the 
+   * element is not attached to a driver that can run scripts.
+   * @return An array of arrays of helpers for the individual table cells. 
+   */
+  public TableCellHelper[][] snapshot() {
+    WebDriver driver = _driver != null ? _driver : JsUtils.driverOf(_table);
+    if (driver == null) {
+      return getCells();
+    }
+    List<List<List<Object>>> rows = JsUtils.execute(SNAPSHOT_SCRIPT, driver, _table);
+    TableCellHelper[][] cells = new TableCellHelper[rows.size()][];
+    for (int r = 0; r < rows.size(); r++) {
+      List<List<Object>> row = rows.get(r);
+      cells[r] = new TableCellHelper[row.size()];
+      for (int c = 0; c < row.size(); c++) {
+        List<Object> cell = row.get(c);
+        cells[r][c] = new TableCellHelper(this, r, c, (String) cell.get(0), (String) cell.get(1),
+            (String) cell.get(2), ((Number) cell.get(3)).intValue(), ((Number) cell.get(4)).intValue());
+      }
+    }
+    return cells;
+  }
+  
+  /**
+   * Start a query over the rows of this table, evaluated inside the page. 
+   * @return A query matching every row until narrowed down. 
+   * @see TableQuery
+   */
+  public TableQuery query() {
+    return new TableQuery(_table, _driver);
+  }
+  
+  /**
+   * Look up the WebElement of a cell, by position as in {@link #getCells()}. 
+   */
+  WebElement findCell(int row, int column) {
+    WebElement tableRow = _table.findElements(By.tagName("tr")).get(row);
+    return tableRow.findElements(By.xpath("td|th")).get(column);
+  }
+  
   protected TableCellHelper[] getRowCells(WebElement row) {
     Vector<TableCellHelper> cells = new Vector<TableCellHelper>();
     List<WebElement> rowData = row.findElements(By.xpath("td|th"));
@@ -101,5 +164,20 @@ public class TableHelper {
     return cells.toArray(new TableCellHelper[0]);
   }
   
+  private static final String SNAPSHOT_SCRIPT = DomGeneration.READ_SCRIPT_MARKER + 
+      "var rows = arguments[0].getElementsByTagName('tr'), result = [];" +
+      "for (var r = 0; r < rows.length; r++) {" +
+      "  var cells = [];" +
+      "  for (var cell = rows[r].firstChild; cell; cell = cell.nextSibling) {" +
+      "    var tag = cell.nodeType == 1 ? cell.tagName.toLowerCase() : '';" +
+      "    if (tag != 'td' && tag != 'th') continue;" +
+      "    var text = cell.innerText != null ? cell.innerText : cell.textContent;" +
+      "    cells.push([tag, text.replace(/^\\s+|\\s+$/g, ''), cell.id, cell.colSpan || 1, cell.rowSpan || 1]);" +
+      "  }" +
+      "  result.push(cells);" +
+      "}" +
+      "return result;";
+  
   private WebElement _table;
+  private WebDriver _driver;
 }
@@ -0,0 +1,18 @@
+package org.freespace.testingplatform.webdriver.helpers;
+
+import org.openqa.selenium.WebElement;
+
+/**
+ * Moves a paginated or virtualized grid to its next page, for 
+ * {@link TableQuery#iterator(TablePager)}. 
+ * <p>
+ * For a virtualized grid, a "page" is whatever set of rows is rendered after scrolling. 
+ */
+public interface TablePager {
+  /**
+   * Show the next page of the grid.
+   * @return The TABLE element holding the next page (the same one if the grid 
+   * re-renders in place), or null if this was the last page. 
+   */
+  WebElement nextPage();
+}
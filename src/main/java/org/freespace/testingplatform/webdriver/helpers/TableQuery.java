@@ -0,0 +1,289 @@
+package org.freespace.testingplatform.webdriver.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.freespace.testingplatform.webdriver.utils.DomGeneration;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Query over the rows of an HTML table, evaluated inside the page so that only the 
+ * matching rows, and only the selected columns, come back over the wire. 
+ * <p>
+ * Create one with {@link TableHelper#query()}. Columns are named by the text of the 
+ * header row (the first row made of TH cells only) or given by position. With the 
+ * HTML shown in {@link TableHelper}:
+ * <pre>
+ *   List&lt;String&gt; spanish = table.query().whereEquals("English", "Two").getColumn("Spanish");
+ *   int row = table.query().whereStartsWith("Spanish", "U").findRow();
+ *   TableCellHelper[] cells = table.getCells()[row];
+ * </pre>
+ * Positions are counted in cells as they appear in the HTML, like in 
+ * {@link TableHelper#getCells()}, so spanned cells are not expanded. Header rows 
+ * never match. 
+ * @see TablePager
+ */
+public class TableQuery implements Iterable<List<String>> {
+
+  /**
+   * Number of rows fetched per call by the iterators.
+   */
+  public static final int BATCH_SIZE = 100;
+
+  TableQuery(WebElement table, WebDriver driver) {
+    _table = table;
+    _driver = driver;
+  }
+
+  public TableQuery whereEquals(String column, String value) {
+    return where(column, "equals", value);
+  }
+
+  public TableQuery whereEquals(int column, String value) {
+    return where(column, "equals", value);
+  }
+
+  public TableQuery whereContains(String column, String value) {
+    return where(column, "contains", value);
+  }
+
+  public TableQuery whereContains(int column, String value) {
+    return where(column, "contains", value);
+  }
+
+  public TableQuery whereStartsWith(String column, String value) {
+    return where(column, "startsWith", value);
+  }
+
+  public TableQuery whereStartsWith(int column, String value) {
+    return where(column, "startsWith", value);
+  }
+
+  /**
+   * Match the whole text of the cell against a JavaScript regular expression. 
+   */
+  public TableQuery whereMatches(String column, String regex) {
+    return where(column, "matches", regex);
+  }
+
+  public TableQuery whereMatches(int column, String regex) {
+    return where(column, "matches", regex);
+  }
+
+  /**
+   * Return only these columns, in this order, instead of every cell of the row. 
+   */
+  public TableQuery select(String... columns) {
+    _projection = new ArrayList<Object>(Arrays.asList(columns));
+    return this;
+  }
+
+  public TableQuery select(Integer... columns) {
+    _projection = new ArrayList<Object>(Arrays.asList(columns));
+    return this;
+  }
+
+  /**
+   * Return at most this many rows. 
+   */
+  public TableQuery limit(int max) {
+    _limit = max;
+    return this;
+  }
+
+  /**
+   * @return The cell texts of the matching rows, projected by {@link #select(String...)}. 
+   */
+  public List<List<String>> getRows() {
+    return values(run(_table, _projection, 0, _limit));
+  }
+
+  /**
+   * @return The texts of one column in the matching rows. The projection of the query 
+   * is left as it was. 
+   */
+  public List<String> getColumn(String column) {
+    return column(column);
+  }
+
+  public List<String> getColumn(int column) {
+    return column(column);
+  }
+
+  /**
+   * @return The indexes of the matching rows in {@link TableHelper#getCells()}. 
+   */
+  public List<Integer> getRowIndexes() {
+    List<Integer> result = new ArrayList<Integer>();
+    for (List<Object> match : run(_table, _projection, 0, _limit)) {
+      result.add(((Number) match.get(0)).intValue());
+    }
+    return result;
+  }
+
+  /**
+   * @return The index of the first matching row in {@link TableHelper#getCells()}, 
+   * or -1 if no row matches. 
+   */
+  public int findRow() {
+    List<List<Object>> matches = run(_table, _projection, 0, 1);
+    return matches.isEmpty() ? -1 : ((Number) matches.get(0).get(0)).intValue();
+  }
+
+  /**
+   * Iterate over the matching rows, fetching {@link #BATCH_SIZE} of them per call. 
+   */
+  public Iterator<List<String>> iterator() {
+    return iterator(null);
+  }
+
+  /**
+   * Iterate over the matching rows of every page of a paginated or virtualized grid, 
+   * fetching {@link #BATCH_SIZE} of them per call and asking the pager for the next page 
+   * when one is exhausted. The limit applies to every page separately. 
+   */
+  public Iterator<List<String>> iterator(final TablePager pager) {
+    return new Iterator<List<String>>() {
+      public boolean hasNext() {
+        while (_batch.isEmpty() && _page != null) {
+          int size = _limit > 0 ? Math.min(BATCH_SIZE, _limit - _offset) : BATCH_SIZE;
+          List<List<String>> batch = size > 0 ? values(run(_page, _projection, _offset, size)) : new ArrayList<List<String>>();
+          _batch.addAll(batch);
+          _offset += batch.size();
+          if (batch.size() < size || size == 0) {
+            _page = pager == null ? null : pager.nextPage();
+            _offset = 0;
+          }
+        }
+        return !_batch.isEmpty();
+      }
+
+      public List<String> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return _batch.remove(0);
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+      private WebElement _page = _table;
+      private int _offset = 0;
+      private List<List<String>> _batch = new ArrayList<List<String>>();
+    };
+  }
+
+  private List<String> column(Object column) {
+    List<String> result = new ArrayList<String>();
+    for (List<String> row : values(run(_table, Arrays.asList(column), 0, _limit))) {
+      result.add(row.get(0));
+    }
+    return result;
+  }
+
+  private TableQuery where(Object column, String operator, String value) {
+    _predicates.add(Arrays.<Object>asList(column, operator, value));
+    return this;
+  }
+
+  /**
+   * @return [row index, [cell texts]] of the matches from {@code offset} on. 
+   */
+  private List<List<Object>> run(WebElement table, List<Object> projection, int offset, int limit) {
+    WebDriver driver = _driver != null ? _driver : JsUtils.driverOf(table);
+    if (driver == null) {
+      throw new IllegalArgumentException("The table does not tell its driver, create the TableHelper with one");
+    }
+    List<Object> result = JsUtils.execute(QUERY_SCRIPT, driver, table, _predicates, projection, offset, limit);
+    if ("error".equals(result.get(0))) {
+      throw new IllegalArgumentException((String) result.get(1));
+    }
+    List<List<Object>> matches = new ArrayList<List<Object>>();
+    for (Object match : (List<?>) result.get(1)) {
+      matches.add(new ArrayList<Object>((List<?>) match));
+    }
+    return matches;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<List<String>> values(List<List<Object>> matches) {
+    List<List<String>> rows = new ArrayList<List<String>>();
+    for (List<Object> match : matches) {
+      rows.add(new ArrayList<String>((List<String>) match.get(1)));
+    }
+    return rows;
+  }
+
+  private static final String QUERY_SCRIPT = DomGeneration.READ_SCRIPT_MARKER + 
+      "var table = arguments[0], predicates = arguments[1], projection = arguments[2];" +
+      "var offset = arguments[3], limit = arguments[4];" +
+      "function cellsOf(row) {" +
+      "  var cells = [];" +
+      "  for (var cell = row.firstChild; cell; cell = cell.nextSibling) {" +
+      "    if (cell.nodeType == 1 && /^t[dh]$/i.test(cell.tagName)) cells.push(cell);" +
+      "  }" +
+      "  return cells;" +
+      "}" +
+      "function isHeader(cells) {" +
+      "  for (var i = 0; i < cells.length; i++) if (cells[i].tagName.toLowerCase() != 'th') return false;" +
+      "  return cells.length > 0;" +
+      "}" +
+      "function text(cell) {" +
+      "  if (!cell) return null;" +
+      "  var value = cell.innerText != null ? cell.innerText : cell.textContent;" +
+      "  return value.replace(/^\\s+|\\s+$/g, '');" +
+      "}" +
+      "var rows = table.getElementsByTagName('tr'), header = null, r, i;" +
+      "for (r = 0; r < rows.length && !header; r++) {" +
+      "  var cells = cellsOf(rows[r]);" +
+      "  if (isHeader(cells)) { header = []; for (i = 0; i < cells.length; i++) header.push(text(cells[i])); }" +
+      "}" +
+      "function position(column) {" +
+      "  if (typeof column == 'number') return column;" +
+      "  for (var i = 0; header && i < header.length; i++) if (header[i] == column) return i;" +
+      "  throw 'No column ' + column + ' in header ' + (header ? header.join(', ') : '(none)');" +
+      "}" +
+      "var tests = [], columns = [];" +
+      "try {" +
+      "  for (i = 0; i < predicates.length; i++) {" +
+      "    tests.push({column: position(predicates[i][0]), op: predicates[i][1], value: predicates[i][2]," +
+      "        regex: predicates[i][1] == 'matches' ? new RegExp('^(?:' + predicates[i][2] + ')$') : null});" +
+      "  }" +
+      "  for (i = 0; projection && i < projection.length; i++) columns.push(position(projection[i]));" +
+      "} catch (e) { return ['error', String(e)]; }" +
+      "function matches(cells) {" +
+      "  for (var i = 0; i < tests.length; i++) {" +
+      "    var t = tests[i], value = text(cells[t.column]);" +
+      "    if (value == null) return false;" +
+      "    if (t.op == 'equals' && value != t.value) return false;" +
+      "    if (t.op == 'contains' && value.indexOf(t.value) < 0) return false;" +
+      "    if (t.op == 'startsWith' && value.indexOf(t.value) != 0) return false;" +
+      "    if (t.op == 'matches' && !t.regex.test(value)) return false;" +
+      "  }" +
+      "  return true;" +
+      "}" +
+      "var result = [], skipped = 0;" +
+      "for (r = 0; r < rows.length && (limit <= 0 || result.length < limit); r++) {" +
+      "  var cells = cellsOf(rows[r]);" +
+      "  if (isHeader(cells) || !matches(cells)) continue;" +
+      "  if (skipped++ < offset) continue;" +
+      "  var values = [];" +
+      "  if (columns.length) { for (i = 0; i < columns.length; i++) values.push(text(cells[columns[i]])); }" +
+      "  else { for (i = 0; i < cells.length; i++) values.push(text(cells[i])); }" +
+      "  result.push([r, values]);" +
+      "}" +
+      "return ['ok', result];";
+
+  private WebElement _table;
+  private WebDriver _driver;
+  private List<List<Object>> _predicates = new ArrayList<List<Object>>();
+  private List<Object> _projection = new ArrayList<Object>();
+  private int _limit = 0;
+}
@@ -22,11 +22,16 @@ public class LoggingWebDriverEventListener implements WebDriverEventListener {
     }
 
     public void beforeChangeValueOf(WebElement element, WebDriver selenium) {
-        originalValue = element.getText();
+        if (log.isDebugEnabled()) {
+            originalValue = element.getText();
+        }
     }
 
     //TODO: Catch StaleElementException
     public void afterChangeValueOf(WebElement element, WebDriver selenium) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
         log.debug("!!!!!! WebDriver changing value in element found " + lastFindBy + " from '" + originalValue + "' to '" + element.getText() + "'");
     }
 
@@ -2,23 +2,40 @@ package org.freespace.testingplatform.webdriver.pages;
 
 import static org.apache.commons.lang.StringUtils.isBlank;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.freespace.testingplatform.config.Config;
 import org.freespace.testingplatform.webdriver.WebdriverLogger;
+import org.freespace.testingplatform.webdriver.utils.DomGeneration;
+import org.freespace.testingplatform.webdriver.utils.JsLocators;
+import org.freespace.testingplatform.webdriver.utils.JsSelects;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
+import org.freespace.testingplatform.webdriver.utils.SelfHealingElements;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.Keys;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
-import org.openqa.selenium.support.PageFactory;
 import org.openqa.selenium.support.ui.LoadableComponent;
 import org.openqa.selenium.support.ui.Select;
 
 
 public abstract class AbstractPage extends LoadableComponent<AbstractPage> {
 
-    private static final int DEFAULT_TIMEOUT = 60;
+    private static final int DEFAULT_TIMEOUT = Config.WAIT_TIMEOUT;
+    private static final String DISPLAYED_SCRIPT = DomGeneration.READ_SCRIPT_MARKER + JsLocators.FIND_FUNCTION
+            + JsLocators.VISIBLE_FUNCTION
+            + "var types = arguments[0], values = arguments[1], result = [];"
+            + "for (var i = 0; i < types.length; i++) {"
+            + "  var first = find(types[i], values[i])[0];"
+            + "  result.push(!!first && visible(first));"
+            + "}"
+            + "return result;";
     protected final WebDriver driver;
     protected TestingPlatformWait wait;
     private final WebdriverLogger log = new WebdriverLogger();
@@ -26,7 +43,7 @@ public abstract class AbstractPage extends LoadableComponent<AbstractPage> {
     public AbstractPage(WebDriver driver) {
         this.driver = driver;
         this.wait = new TestingPlatformWait(driver, DEFAULT_TIMEOUT);
-        PageFactory.initElements(driver, this);
+        PageElements.initElements(driver, this);
     }
 
     @Override
@@ -36,6 +53,21 @@ public abstract class AbstractPage extends LoadableComponent<AbstractPage> {
 
     protected abstract By getPageLoadedCheckElementLocator();
 
+    /**
+     * Finds an element that is located again when a re-render makes it stale.
+     */
+    protected WebElement find(By by) {
+        return SelfHealingElements.find(driver, by);
+    }
+
+    /**
+     * Finds elements whose children heal like those of {@link #find(By)}; the elements
+     * themselves do not, a stale one means the list has to be read again.
+     */
+    protected List<WebElement> findAll(By by) {
+        return SelfHealingElements.findAll(driver, by);
+    }
+
     // Primitive actions
     protected void clickOn(WebElement webElement) {
         log.verbose("click", webElement);
@@ -99,12 +131,56 @@ public abstract class AbstractPage extends LoadableComponent<AbstractPage> {
         }
     }
 
+    /**
+     * @return whether the first element matching the locator is displayed, false if there
+     *         is none; no exception is thrown for a missing element
+     */
     public boolean isElementDisplayed(By by) {
+        return areElementsDisplayed(by)[0];
+    }
+
+    /**
+     * Checks many locators in a single script call, looking the elements up and computing
+     * their visibility inside the page. Locators the page cannot resolve, and browsers that
+     * cannot run the script, are checked one by one with findElements.
+     *
+     * @return for each locator, whether its first match is displayed
+     */
+    public boolean[] areElementsDisplayed(By... locators) {
+        boolean[] result = new boolean[locators.length];
+        List<Integer> inPage = new ArrayList<Integer>();
+        List<String> types = new ArrayList<String>();
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < locators.length; i++) {
+            String[] locator = JsLocators.describe(locators[i]);
+            if (locator != null && driver instanceof JavascriptExecutor) {
+                inPage.add(i);
+                types.add(locator[0]);
+                values.add(locator[1]);
+            } else {
+                result[i] = isFirstDisplayed(locators[i]);
+            }
+        }
+        if (inPage.isEmpty()) {
+            return result;
+        }
         try {
-            driver.findElement(by).isDisplayed();
-            return true;
-        } catch (NoSuchElementException e) {
-            return false;
+            List<Boolean> displayed = JsUtils.execute(DISPLAYED_SCRIPT, driver, types, values);
+            for (int i = 0; i < inPage.size(); i++) {
+                result[inPage.get(i)] = Boolean.TRUE.equals(displayed.get(i));
+            }
+        } catch (WebDriverException e) {
+            for (Integer i : inPage) {
+                result[i] = isFirstDisplayed(locators[i]);
+            }
+        }
+        return result;
+    }
+
+    private boolean isFirstDisplayed(By by) {
+        List<WebElement> found = driver.findElements(by);
+        try {
+            return !found.isEmpty() && found.get(0).isDisplayed();
         } catch (StaleElementReferenceException e) {
             return false;
         }
@@ -122,6 +198,13 @@ public abstract class AbstractPage extends LoadableComponent<AbstractPage> {
           // note that original Select.selectByIndex(int) actually using html attribute 'index'
           // and it don't fail to find it - always returning '1' (IE8)
           log.verbose("select by index", webElement, "" + index);
+          if (driver instanceof JavascriptExecutor) {
+              // one call instead of one per option up to the index
+              if (!JsSelects.selectIndex(driver, webElement, index)) {
+                  throw new NoSuchElementException("Cannot select option " + index + ", it does not exist or is disabled");
+              }
+              return;
+          }
           Select select = new Select(webElement);
           int i = 0;
           for (WebElement option : select.getOptions()) {
@@ -131,6 +214,7 @@ public abstract class AbstractPage extends LoadableComponent<AbstractPage> {
               }
               ++i;
           }
+          throw new NoSuchElementException("Cannot select option " + index + ", there are only " + i);
       }
 
 }
@@ -0,0 +1,39 @@
+package org.freespace.testingplatform.webdriver.pages;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.Duration;
+import org.openqa.selenium.support.ui.Sleeper;
+import org.openqa.selenium.support.ui.SystemClock;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+/**
+ * A WebDriverWait that polls quickly at first and backs off: the interval starts at
+ * {@code firstPollMillis} and doubles up to {@link #MAX_POLL_MILLIS}. Conditions that hold
+ * almost at once are not held up by a coarse interval, and long waits do not flood the
+ * browser with lookups.
+ */
+public class BackoffWait extends WebDriverWait {
+
+    public static final long MIN_POLL_MILLIS = 25;
+    public static final long MAX_POLL_MILLIS = 1000;
+
+    public BackoffWait(WebDriver driver, long timeoutMillis, long firstPollMillis) {
+        super(driver, new SystemClock(), new BackoffSleeper(firstPollMillis), (timeoutMillis + 999) / 1000, 0);
+    }
+
+    private static class BackoffSleeper implements Sleeper {
+
+        private long interval;
+
+        BackoffSleeper(long firstPollMillis) {
+            this.interval = Math.max(MIN_POLL_MILLIS, Math.min(MAX_POLL_MILLIS, firstPollMillis));
+        }
+
+        public void sleep(Duration ignored) throws InterruptedException {
+            Thread.sleep(interval);
+            interval = Math.min(MAX_POLL_MILLIS, interval * 2);
+        }
+    }
+}
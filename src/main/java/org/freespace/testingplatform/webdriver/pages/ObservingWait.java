@@ -0,0 +1,405 @@
+package org.freespace.testingplatform.webdriver.pages;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.freespace.testingplatform.webdriver.TestDeadline;
+import org.freespace.testingplatform.webdriver.session.WebDriverSession;
+import org.freespace.testingplatform.webdriver.utils.DomGeneration;
+import org.freespace.testingplatform.webdriver.utils.JsLocators;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+/**
+ * Waits for an element condition inside the browser instead of polling it over the wire.
+ * <p/>
+ * An asynchronous script checks the condition, then re-checks it on every DOM mutation
+ * (MutationObserver) and on a short in-page timer for changes that are not mutations, such
+ * as a stylesheet being applied. It answers as soon as the condition holds, so a wait costs
+ * one round trip and adds no polling delay. Waits for one of, or all of, several locators
+ * check them all in the same script. The timer starts at a fraction of the usual
+ * wait for the locator (see {@link WaitLatencies}) and backs off from there.
+ * <p/>
+ * A script runs at most {@link #SLICE_MILLIS}, well below the script timeout set by the
+ * WebDriverFactory and the command deadline of the session watchdog, and longer waits are
+ * made of several slices. Locators the page cannot resolve, and browsers that cannot run
+ * the script, fall back to a WebDriverWait.
+ * <p/>
+ * Timeouts are clipped to the {@link TestDeadline} of the test.
+ */
+public class ObservingWait {
+
+    public enum Condition {
+        EXISTS, DISPLAYED, HIDDEN, ABSENT
+    }
+
+    static final long SLICE_MILLIS = 10000;
+    private static final int MAX_FAILURES = 3;
+    private static final Logger log = Logger.getLogger(ObservingWait.class);
+
+    private static final String SCRIPT = WebDriverSession.WAIT_SCRIPT_MARKER
+            + "var slice = arguments[0], condition = arguments[1], all = arguments[2], types = arguments[3];"
+            + "var values = arguments[4], interval = arguments[5];"
+            + "var callback = arguments[arguments.length - 1];"
+            + JsLocators.FIND_FUNCTION
+            + JsLocators.VISIBLE_FUNCTION
+            + "function holds(i) {"
+            + "  var first = find(types[i], values[i])[0];"
+            + "  if (condition == 'EXISTS') return !!first;"
+            + "  if (condition == 'DISPLAYED') return !!first && visible(first);"
+            + "  if (condition == 'HIDDEN') return !!first && !visible(first);"
+            + "  return !first;"
+            + "}"
+            + "function check() {"
+            + "  for (var i = 0; i < types.length; i++) {"
+            + "    if (holds(i) != all) return all ? -1 : i;"
+            + "  }"
+            + "  return all ? 0 : -1;"
+            + "}"
+            + "var matched = check();"
+            + "if (matched >= 0) { callback(matched); return; }"
+            + "var done = false, observer = null, Observer = window.MutationObserver || window.WebKitMutationObserver;"
+            + "function finish(result) {"
+            + "  if (done) return;"
+            + "  done = true;"
+            + "  if (observer) observer.disconnect();"
+            + "  clearTimeout(poll);"
+            + "  clearTimeout(timer);"
+            + "  callback(result);"
+            + "}"
+            + "function evaluate() { try { var result = check(); if (result >= 0) finish(result); } catch (e) { } }"
+            + "if (Observer) {"
+            + "  observer = new Observer(evaluate);"
+            + "  observer.observe(document.documentElement, {childList: true, subtree: true, attributes: true, characterData: true});"
+            + "}"
+            + "var poll;"
+            + "function schedule() {"
+            + "  poll = setTimeout(function () { evaluate(); if (!done) schedule(); }, interval);"
+            + "  interval = Math.min(interval * 2, " + BackoffWait.MAX_POLL_MILLIS + ");"
+            + "}"
+            + "schedule();"
+            + "var timer = setTimeout(function () { finish(-1); }, slice);";
+
+    /**
+     * Installs {@code window.__quiescence} once per page. It counts the XHR and fetch requests
+     * in flight and remembers the last DOM mutation; {@code quietFor()} tells how long the
+     * page has been idle. The first wait on a page installs it; what happened before is
+     * unknown, so the page counts as active for {@code grace} ms after the install, a
+     * variable the scripts define before the hook.
+     */
+    private static final String QUIESCENCE_HOOK =
+            "if (!window.__quiescence) { (function () {"
+                    + "var q = window.__quiescence = {requests: 0, animations: 0, lastActivity: new Date().getTime() + grace};"
+                    + "function touch() { q.lastActivity = new Date().getTime(); }"
+                    + "function tracker() {"
+                    + "  var finished = false;"
+                    + "  q.requests++;"
+                    + "  touch();"
+                    + "  return function () { if (!finished) { finished = true; q.requests--; touch(); } };"
+                    + "}"
+                    + "var XHR = window.XMLHttpRequest;"
+                    + "if (XHR && XHR.prototype && XHR.prototype.addEventListener) {"
+                    + "  var send = XHR.prototype.send;"
+                    + "  XHR.prototype.send = function () {"
+                    + "    var xhr = this, done = tracker();"
+                    + "    xhr.addEventListener('readystatechange', function () { if (xhr.readyState == 4) done(); }, false);"
+                    + "    xhr.addEventListener('loadend', done, false);"
+                    + "    try { return send.apply(xhr, arguments); } catch (e) { done(); throw e; }"
+                    + "  };"
+                    + "}"
+                    + "if (window.fetch) {"
+                    + "  var fetch = window.fetch;"
+                    + "  window.fetch = function () {"
+                    + "    var done = tracker();"
+                    + "    try { var promise = fetch.apply(this, arguments); } catch (e) { done(); throw e; }"
+                    + "    promise.then(done, done);"
+                    + "    return promise;"
+                    + "  };"
+                    + "}"
+                    + "if (document.addEventListener) {"
+                    + "  var started = function () { q.animations++; touch(); };"
+                    + "  var ended = function () { q.animations = Math.max(0, q.animations - 1); touch(); };"
+                    + "  document.addEventListener('animationstart', started, true);"
+                    + "  document.addEventListener('animationend', ended, true);"
+                    + "  document.addEventListener('transitionstart', started, true);"
+                    + "  document.addEventListener('transitionend', ended, true);"
+                    + "  document.addEventListener('transitioncancel', ended, true);"
+                    + "}"
+                    + "var Observer = window.MutationObserver || window.WebKitMutationObserver;"
+                    + "if (Observer) {"
+                    + "  new Observer(touch).observe(document.documentElement, {childList: true, subtree: true, attributes: true, characterData: true});"
+                    + "}"
+                    + "function animating() {"
+                    + "  if (!document.getAnimations) return q.animations > 0;"
+                    + "  var animations = document.getAnimations();"
+                    + "  for (var i = 0; i < animations.length; i++) {"
+                    + "    var timing = animations[i].effect && animations[i].effect.getTiming ? animations[i].effect.getTiming() : {};"
+                    + "    if (animations[i].playState == 'running' && timing.iterations != Infinity) return true;"
+                    + "  }"
+                    + "  return false;"
+                    + "}"
+                    + "q.quietFor = function () {"
+                    + "  var busy = q.requests > 0 || document.readyState != 'complete'"
+                    + "      || (window.jQuery && window.jQuery.active > 0) || animating();"
+                    + "  if (busy) touch();"
+                    + "  return new Date().getTime() - q.lastActivity;"
+                    + "};"
+                    + "})(); }";
+
+    private static final String QUIET_PROBE = DomGeneration.READ_SCRIPT_MARKER
+            + "var grace = arguments[0];"
+            + QUIESCENCE_HOOK
+            + "return window.__quiescence.quietFor();";
+
+    private static final String QUIET_SCRIPT = WebDriverSession.WAIT_SCRIPT_MARKER
+            + "var slice = arguments[0], quiet = arguments[1], grace = arguments[2], callback = arguments[arguments.length - 1];"
+            + QUIESCENCE_HOOK
+            + "var started = new Date().getTime();"
+            + "(function check() {"
+            + "  var quietFor = window.__quiescence.quietFor();"
+            + "  if (quietFor >= quiet) { callback(0); return; }"
+            + "  if (new Date().getTime() - started >= slice) { callback(-1); return; }"
+            + "  setTimeout(check, Math.min(50, quiet - quietFor));"
+            + "})();";
+
+    private final WebDriver driver;
+    private final WaitLatencies latencies = WaitLatencies.getInstance();
+    private boolean supported;
+
+    public ObservingWait(WebDriver driver) {
+        this.driver = driver;
+        this.supported = driver instanceof JavascriptExecutor;
+    }
+
+    /**
+     * @throws TimeoutException if the condition does not hold within the timeout
+     */
+    public void until(Condition condition, By by, long timeoutMillis) {
+        untilAny(condition, timeoutMillis, by);
+    }
+
+    /**
+     * Waits until the condition holds for one of the locators, checking all of them in the
+     * same round trip.
+     *
+     * @return the index of the first locator the condition holds for
+     * @throws TimeoutException if it holds for none of them within the timeout
+     * @throws IllegalArgumentException if there are no locators
+     */
+    public int untilAny(Condition condition, long timeoutMillis, By... locators) {
+        checkLocators(locators);
+        String what = what(condition, false, locators);
+        long start = TestDeadline.enter();
+        boolean timedOut = false;
+        try {
+            timeoutMillis = TestDeadline.limit(timeoutMillis);
+            int matched = waitFor(condition, false, locators, start + timeoutMillis, timeoutMillis, what);
+            latencies.record(condition, locators[matched], System.currentTimeMillis() - start);
+            return matched;
+        } catch (TimeoutException e) {
+            timedOut = true;
+            throw e;
+        } finally {
+            finish(what, start, timedOut);
+        }
+    }
+
+    /**
+     * Waits until the condition holds for every locator at the same time. Only a wait for a
+     * single locator teaches {@link WaitLatencies}: the time all of them took says nothing
+     * about each one.
+     *
+     * @throws TimeoutException if it does not within the timeout
+     * @throws IllegalArgumentException if there are no locators
+     */
+    public void untilAll(Condition condition, long timeoutMillis, By... locators) {
+        checkLocators(locators);
+        String what = what(condition, true, locators);
+        long start = TestDeadline.enter();
+        boolean timedOut = false;
+        try {
+            timeoutMillis = TestDeadline.limit(timeoutMillis);
+            waitFor(condition, true, locators, start + timeoutMillis, timeoutMillis, what);
+            if (locators.length == 1) {
+                latencies.record(condition, locators[0], System.currentTimeMillis() - start);
+            }
+        } catch (TimeoutException e) {
+            timedOut = true;
+            throw e;
+        } finally {
+            finish(what, start, timedOut);
+        }
+    }
+
+    private static void checkLocators(By[] locators) {
+        if (locators.length == 0) {
+            throw new IllegalArgumentException("Nothing to wait for, no locators given");
+        }
+    }
+
+    private static String what(Condition condition, boolean all, By[] locators) {
+        String located = locators.length == 1 ? locators[0].toString()
+                : (all ? "all" : "one") + " of " + Arrays.toString(locators);
+        return located + " to be " + condition.name().toLowerCase();
+    }
+
+    /**
+     * Accounts the wait to the test deadline. A wait that timed out because the deadline
+     * clipped it fails the test with the deadline breakdown instead.
+     */
+    private static void finish(String what, long start, boolean timedOut) {
+        TestDeadline.exit("wait for " + what, start);
+        if (timedOut) {
+            TestDeadline.check();
+        }
+    }
+
+    private int waitFor(Condition condition, boolean all, By[] locators, long deadline, long timeoutMillis,
+                        String what) {
+        long firstPoll = BackoffWait.MAX_POLL_MILLIS;
+        String[] types = new String[locators.length];
+        String[] values = new String[locators.length];
+        boolean describable = true;
+        for (int i = 0; i < locators.length; i++) {
+            firstPoll = Math.min(firstPoll, firstPoll(condition, locators[i]));
+            String[] locator = JsLocators.describe(locators[i]);
+            if (locator == null) {
+                describable = false;
+            } else {
+                types[i] = locator[0];
+                values[i] = locator[1];
+            }
+        }
+        if (describable) {
+            Integer matched = observe(what, deadline, timeoutMillis, SCRIPT, condition.name(), all,
+                    Arrays.asList(types), Arrays.asList(values), firstPoll);
+            if (matched != null) {
+                return matched;
+            }
+        }
+        long remaining = Math.max(1, deadline - System.currentTimeMillis());
+        return new BackoffWait(driver, remaining, firstPoll)
+                .ignoring(StaleElementReferenceException.class)
+                .until(poll(condition, all, locators));
+    }
+
+    /**
+     * Waits until the page has been quiet for {@code quietMillis}: no XHR or fetch request in
+     * flight, no jQuery request, no running finite animation or transition, the document
+     * loaded and no DOM mutation.
+     * <p/>
+     * The hook is installed by the first wait on a page, so actions cost nothing extra.
+     * Requests started before it are not seen; to cover the action that triggered the wait,
+     * the page is not considered quiet before {@code graceMillis} have passed since the
+     * install, on top of the quiet window. Recurring timers are not tracked, a polling page
+     * would never be quiet.
+     *
+     * @param graceMillis how long activity before the install is assumed to go on
+     * @throws TimeoutException if the page does not quiet down within the timeout
+     */
+    public void untilQuiet(final long quietMillis, final long graceMillis, long timeoutMillis) {
+        String what = "the page to be quiet for " + quietMillis + " ms";
+        long start = TestDeadline.enter();
+        boolean timedOut = false;
+        try {
+            timeoutMillis = TestDeadline.limit(timeoutMillis);
+            long deadline = start + timeoutMillis;
+            if (observe(what, deadline, timeoutMillis, QUIET_SCRIPT, quietMillis, graceMillis) != null) {
+                return;
+            }
+            long remaining = Math.max(1, deadline - System.currentTimeMillis());
+            new BackoffWait(driver, remaining, BackoffWait.MIN_POLL_MILLIS).until(new ExpectedCondition<Boolean>() {
+                public Boolean apply(WebDriver driver) {
+                    Number quietFor = (Number) ((JavascriptExecutor) driver).executeScript(QUIET_PROBE, graceMillis);
+                    return quietFor.longValue() >= quietMillis;
+                }
+            });
+        } catch (TimeoutException e) {
+            timedOut = true;
+            throw e;
+        } finally {
+            finish(what, start, timedOut);
+        }
+    }
+
+    /**
+     * Runs an in-page wait script slice after slice until it answers with a non-negative
+     * number. The length of the slice is passed as the first script argument.
+     *
+     * @return the answer, or null if the browser cannot run the script and the caller has
+     *         to fall back to polling
+     */
+    private Integer observe(String what, long deadline, long timeoutMillis, String script, Object... arguments) {
+        Object[] sliceAndArguments = new Object[arguments.length + 1];
+        System.arraycopy(arguments, 0, sliceAndArguments, 1, arguments.length);
+        int failures = 0;
+        while (supported && failures < MAX_FAILURES) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new TimeoutException("Timed out after " + timeoutMillis + " ms waiting for " + what);
+            }
+            sliceAndArguments[0] = Math.min(remaining, SLICE_MILLIS);
+            try {
+                Object result = ((JavascriptExecutor) driver).executeAsyncScript(script, sliceAndArguments);
+                if (result instanceof Number && ((Number) result).intValue() >= 0) {
+                    return ((Number) result).intValue();
+                }
+                failures = 0;
+            } catch (UnsupportedOperationException e) {
+                supported = false;
+            } catch (WebDriverException e) {
+                // usually the page navigated away while the script was waiting
+                failures++;
+                log.debug("Waiting for " + what + " failed: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A quarter of the median wait: most waits for the locator are then answered by the
+     * second or third poll.
+     */
+    private long firstPoll(Condition condition, By by) {
+        long median = latencies.medianFor(condition, by);
+        long interval = median < 0 ? BackoffWait.MIN_POLL_MILLIS : median / 4;
+        return Math.max(BackoffWait.MIN_POLL_MILLIS, Math.min(BackoffWait.MAX_POLL_MILLIS, interval));
+    }
+
+    /**
+     * @return a condition yielding the index of the matched locator, null while there is none
+     */
+    private static ExpectedCondition<Integer> poll(final Condition condition, final boolean all, final By[] locators) {
+        return new ExpectedCondition<Integer>() {
+            public Integer apply(WebDriver driver) {
+                for (int i = 0; i < locators.length; i++) {
+                    if (holds(driver, condition, locators[i]) != all) {
+                        return all ? null : i;
+                    }
+                }
+                return all ? 0 : null;
+            }
+        };
+    }
+
+    private static boolean holds(WebDriver driver, Condition condition, By by) {
+        List<WebElement> found = driver.findElements(by);
+        switch (condition) {
+            case EXISTS:
+                return !found.isEmpty();
+            case DISPLAYED:
+                return !found.isEmpty() && found.get(0).isDisplayed();
+            case HIDDEN:
+                return !found.isEmpty() && !found.get(0).isDisplayed();
+            default:
+                return found.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.freespace.testingplatform.webdriver.pages;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.freespace.testingplatform.webdriver.utils.DomGeneration;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
+import org.freespace.testingplatform.webdriver.utils.SelfHealingElements;
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.Locatable;
+import org.openqa.selenium.internal.WrapsDriver;
+import org.openqa.selenium.internal.WrapsElement;
+import org.openqa.selenium.support.FindBy;
+import org.openqa.selenium.support.FindBys;
+import org.openqa.selenium.support.pagefactory.Annotations;
+
+/**
+ * Initializes the WebElement fields of page objects like PageFactory does, but looks each
+ * element up once per page load instead of once per use.
+ * <p/>
+ * A field keeps its handle until {@link DomGeneration} counts a navigation or a
+ * StaleElementReferenceException, and only while the page object's context still drives
+ * the same browser session: a pooled driver may hand the next test another session, and
+ * the old one to another thread. A handle that turns out to be stale is looked up again
+ * and the call repeated once; elements found inside a field heal the same way, see
+ * {@link SelfHealingElements}. Lists are still looked up on every use, their content
+ * changes without a page load. The fields and locators of a page class are worked out
+ * once, not for every page instance.
+ */
+class PageElements {
+
+    private static final Map<Class<?>, List<PageField>> fields = new ConcurrentHashMap<Class<?>, List<PageField>>();
+
+    static void initElements(SearchContext context, Object page) {
+        ClassLoader loader = page.getClass().getClassLoader();
+        for (PageField field : fieldsOf(page.getClass())) {
+            Object value;
+            if (field.list) {
+                value = Proxy.newProxyInstance(loader, new Class[]{List.class},
+                        new ListHandler(context, field.by));
+            } else {
+                value = Proxy.newProxyInstance(loader, new Class[]{WebElement.class, WrapsElement.class, Locatable.class},
+                        new ElementHandler(context, field.by));
+            }
+            try {
+                field.field.set(page, value);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static List<PageField> fieldsOf(Class<?> pageClass) {
+        List<PageField> result = fields.get(pageClass);
+        if (result == null) {
+            result = new ArrayList<PageField>();
+            for (Class<?> type = pageClass; type != Object.class; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    boolean list = isElementList(field);
+                    if (list || WebElement.class.isAssignableFrom(field.getType())) {
+                        field.setAccessible(true);
+                        result.add(new PageField(field, new Annotations(field).buildBy(), list));
+                    }
+                }
+            }
+            fields.put(pageClass, result);
+        }
+        return result;
+    }
+
+    private static boolean isElementList(Field field) {
+        if (!List.class.isAssignableFrom(field.getType())) {
+            return false;
+        }
+        Type type = field.getGenericType();
+        if (!(type instanceof ParameterizedType)) {
+            return false;
+        }
+        return WebElement.class.equals(((ParameterizedType) type).getActualTypeArguments()[0])
+                && (field.getAnnotation(FindBy.class) != null || field.getAnnotation(FindBys.class) != null);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class PageField {
+        final Field field;
+        final By by;
+        final boolean list;
+
+        PageField(Field field, By by, boolean list) {
+            this.field = field;
+            this.by = by;
+            this.list = list;
+        }
+    }
+
+    /**
+     * Also the search context of elements found inside the field, it resolves the field
+     * itself rather than calling back into the proxy.
+     */
+    private static class ElementHandler implements InvocationHandler, SearchContext {
+        private final SearchContext context;
+        private final By by;
+        private WebElement element;
+        private DomGeneration generation;
+        private long pageLoads;
+
+        ElementHandler(SearchContext context, By by) {
+            this.context = context;
+            this.by = by;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("findElement".equals(method.getName())) {
+                return SelfHealingElements.find(this, (By) args[0]);
+            }
+            if ("findElements".equals(method.getName())) {
+                return SelfHealingElements.findAll(this, (By) args[0]);
+            }
+            WebElement target = find();
+            if ("getWrappedElement".equals(method.getName())) {
+                return target;
+            }
+            try {
+                return PageElements.invoke(method, target, args);
+            } catch (StaleElementReferenceException e) {
+                return PageElements.invoke(method, refind(), args);
+            }
+        }
+
+        public WebElement findElement(By inner) {
+            try {
+                return find().findElement(inner);
+            } catch (StaleElementReferenceException e) {
+                return refind().findElement(inner);
+            }
+        }
+
+        public List<WebElement> findElements(By inner) {
+            try {
+                return find().findElements(inner);
+            } catch (StaleElementReferenceException e) {
+                return refind().findElements(inner);
+            }
+        }
+
+        private WebElement refind() {
+            forget();
+            WebElement found = find();
+            SelfHealingElements.healed(by.toString());
+            return found;
+        }
+
+        private synchronized WebElement find() {
+            DomGeneration current = generationOf(context);
+            if (element != null && generation == current && generation.getPageLoads() == pageLoads) {
+                return element;
+            }
+            element = null;
+            long loads = current == null ? 0 : current.getPageLoads();
+            WebElement found = context.findElement(by);
+            if (current != null) {
+                generation = current;
+                pageLoads = loads;
+                element = found;
+            }
+            return found;
+        }
+
+        /**
+         * @return the generation of the browser session the context drives right now, null
+         *         if it cannot tell and nothing should be kept
+         */
+        private static DomGeneration generationOf(SearchContext context) {
+            WebDriver driver = null;
+            if (context instanceof WrapsDriver) {
+                driver = ((WrapsDriver) context).getWrappedDriver();
+            } else if (context instanceof WebElement) {
+                driver = JsUtils.driverOf((WebElement) context);
+            } else if (context instanceof WebDriver) {
+                driver = (WebDriver) context;
+            }
+            return driver == null ? null : DomGeneration.of(driver);
+        }
+
+        private synchronized void forget() {
+            element = null;
+        }
+    }
+
+    private static class ListHandler implements InvocationHandler {
+        private final SearchContext context;
+        private final By by;
+
+        ListHandler(SearchContext context, By by) {
+            this.context = context;
+            this.by = by;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return PageElements.invoke(method, context.findElements(by), args);
+        }
+    }
+}
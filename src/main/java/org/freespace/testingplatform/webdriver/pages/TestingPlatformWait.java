@@ -2,129 +2,145 @@ package org.freespace.testingplatform.webdriver.pages;
 
 import static org.apache.commons.lang.StringUtils.isBlank;
 
+import org.freespace.testingplatform.config.Config;
+import org.freespace.testingplatform.webdriver.TestDeadline;
+import org.freespace.testingplatform.webdriver.TestDeadlineExceededException;
 import org.freespace.testingplatform.webdriver.WebdriverLogger;
+import org.freespace.testingplatform.webdriver.pages.ObservingWait.Condition;
 import org.freespace.testingplatform.webdriver.utils.JsUtils;
+import org.freespace.testingplatform.webdriver.utils.SelfHealingElements;
 import org.openqa.selenium.By;
-import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.Select;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 /**
  * Author: Andrey Rebrov &lt;andrey.rebrov@ubs.com>
+ * <p/>
+ * Element waits are evaluated inside the browser by {@link ObservingWait}. Waits without
+ * an explicit timeout use the one learned for the locator by {@link WaitLatencies}.
  */
 public class TestingPlatformWait {
 
     private final WebdriverLogger log = new WebdriverLogger();
-    private WebDriverWait wait;
     private WebDriver driver;
+    private ObservingWait observing;
+    private long timeoutMillis;
 
     public TestingPlatformWait(WebDriver driver, int defaultTimeout) {
         this.driver = driver;
-        this.wait = new WebDriverWait(driver, defaultTimeout);
+        this.observing = new ObservingWait(driver);
+        this.timeoutMillis = defaultTimeout * 1000L;
     }
 
     public WebElement waitUntilFound(final By by) {
         log.verbose("waiting until found", by);
         try {
-            return wait.until(new ExpectedCondition<WebElement>() {
-                public WebElement apply(WebDriver driver) {
-                    return driver.findElement(by);
-                }
-            });
+            observing.until(Condition.EXISTS, by, timeoutFor(Condition.EXISTS, by));
+            return SelfHealingElements.find(driver, by);
+        } catch (TestDeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             return null;
         }
     }
 
+    /**
+     * @deprecated the element returned by {@link #waitUntilFound(By)} is located again when
+     *             it goes stale, use that
+     */
+    @Deprecated
     public WebElement waitUntilFoundIgnoringStale(final By by) {
-        log.verbose("waiting until found", by);
-        try {
-            WebDriverWait wait1 = (WebDriverWait) new WebDriverWait(driver, 60).ignoring(StaleElementReferenceException.class);
-            return wait1.until(new ExpectedCondition<WebElement>() {
-                public WebElement apply(WebDriver driver) {
-                    return driver.findElement(by);
-                }
-            });
-        } catch (Exception e) {
-            return null;
-        }
+        return waitUntilFound(by);
     }
 
     public void waitUntilExist(final By by) {
         log.verbose("waiting for exist", by);
-        wait.until(new ExpectedCondition<WebElement>() {
-            public WebElement apply(WebDriver driver) {
-                return driver.findElement(by);
-            }
-        });
+        observing.until(Condition.EXISTS, by, timeoutFor(Condition.EXISTS, by));
     }
 
     public void waitUntilExist(final By by, int seconds) {
         log.verbose("waiting for exist", by);
-        WebDriverWait waitWithTimeout = new WebDriverWait(driver, seconds);
-        waitWithTimeout.until(new ExpectedCondition<WebElement>() {
-            public WebElement apply(WebDriver driver) {
-                return driver.findElement(by);
-            }
-        });
+        observing.until(Condition.EXISTS, by, seconds * 1000L);
     }
 
     public void waitUntilExistOneOf(final By one, final By two) {
-        log.verbose("waiting for displayed one of: ", one, two);
-        wait.until(new ExpectedCondition<WebElement>() {
-            public WebElement apply(WebDriver driver) {
-                WebElement element = driver.findElement(one);
-                if (element == null) {
-                    element = driver.findElement(two);
-                }
-                return element;
-            }
-        });
+        waitForAny(Condition.EXISTS, one, two);
     }
 
     public void waitUntilDisplayed(final By by) {
         log.verbose("waiting for displayed", by);
-        waitUntilExist(by);
-        wait.until(new ExpectedCondition<Boolean>() {
-            public Boolean apply(WebDriver driver) {
-                return driver.findElement(by).isDisplayed();
-            }
-        });
+        observing.until(Condition.DISPLAYED, by, timeoutFor(Condition.DISPLAYED, by));
     }
 
     public void waitUntilDisplayedOneOf(final By one, final By two) {
-        log.verbose("waiting for displayed one of: ", one, two);
-        wait.until(new ExpectedCondition<Boolean>() {
-            public Boolean apply(WebDriver driver) {
-                boolean firstDisplayed = false;
-                try {
-                    firstDisplayed = driver.findElement(one).isDisplayed();
-                } catch (Exception e) {
-
-                }
-                boolean secondDisplayed = false;
-                try {
-                    secondDisplayed = driver.findElement(two).isDisplayed();
-                } catch (Exception e) {
-
-                }
-                return firstDisplayed || secondDisplayed;
-            }
-        });
+        waitForAny(Condition.DISPLAYED, one, two);
+    }
+
+    /**
+     * Waits for whichever of the locators is displayed first, e.g. the success or the error
+     * dialog of a form.
+     *
+     * @return the index of the displayed locator
+     */
+    public int waitForAny(By... locators) {
+        return waitForAny(Condition.DISPLAYED, locators);
+    }
+
+    /**
+     * @return the index of the first locator the condition holds for
+     */
+    public int waitForAny(Condition condition, By... locators) {
+        log.verbose("waiting for " + condition.name().toLowerCase() + " one of", locators);
+        return observing.untilAny(condition, timeoutFor(condition, locators), locators);
+    }
+
+    public void waitForAll(By... locators) {
+        waitForAll(Condition.DISPLAYED, locators);
+    }
+
+    public void waitForAll(Condition condition, By... locators) {
+        log.verbose("waiting for " + condition.name().toLowerCase() + " all of", locators);
+        observing.untilAll(condition, timeoutFor(condition, locators), locators);
     }
 
     public void waitUntilHidden(final By by) {
         log.verbose("waiting for hidden", by);
-        waitUntilExist(by);
-        wait.until(new ExpectedCondition<Boolean>() {
-            public Boolean apply(WebDriver driver) {
-                return !driver.findElement(by).isDisplayed();
+        observing.until(Condition.HIDDEN, by, timeoutFor(Condition.HIDDEN, by));
+    }
+
+    /**
+     * Polls a condition for the default timeout, clipped to the {@link TestDeadline}.
+     */
+    private <T> T until(String what, ExpectedCondition<T> condition) {
+        long start = TestDeadline.enter();
+        boolean timedOut = false;
+        try {
+            long timeout = TestDeadline.limit(timeoutMillis);
+            return new BackoffWait(driver, timeout, BackoffWait.MIN_POLL_MILLIS).until(condition);
+        } catch (TimeoutException e) {
+            timedOut = true;
+            throw e;
+        } finally {
+            TestDeadline.exit("wait for " + what, start);
+            if (timedOut) {
+                TestDeadline.check();
             }
-        });
+        }
+    }
 
+    private long timeoutFor(Condition condition, By by) {
+        return WaitLatencies.getInstance().timeoutFor(condition, by, timeoutMillis);
+    }
+
+    private long timeoutFor(Condition condition, By[] locators) {
+        long timeout = 0;
+        for (By by : locators) {
+            timeout = Math.max(timeout, timeoutFor(condition, by));
+        }
+        return timeout;
     }
 
     public void selectByText(WebElement
@@ -139,17 +155,33 @@ public class TestingPlatformWait {
     public void waitForSelectFill(WebDriver driver, WebElement
             selectElement) {
         final Select select = new Select(selectElement);
-        wait.until(new ExpectedCondition<Boolean>() {
+        until("select options", new ExpectedCondition<Boolean>() {
             public Boolean apply(WebDriver driver) {
                 return select.getOptions().size() > 0;
             }
         });
     }
 
+    /**
+     * Waits until the page has settled after an action: no request in flight, no animation
+     * and no DOM change for {@code wait.quiet} ms. Use it instead of fixed delays.
+     * <p/>
+     * On the first wait after a page load the page is assumed busy for another
+     * {@code wait.quiet.grace} ms, see {@link ObservingWait#untilQuiet(long, long, long)}.
+     */
+    public void waitForQuiescence() {
+        waitForQuiescence(Config.WAIT_QUIET);
+    }
+
+    public void waitForQuiescence(long quietMillis) {
+        log.verbose("waiting for the page to be quiet for " + quietMillis + " ms");
+        observing.untilQuiet(quietMillis, Config.WAIT_QUIET_GRACE, timeoutMillis);
+    }
+
     public void waitForAjaxComplete() {
         log.verbose("waiting for ajax completion");
         final JsUtils js = new JsUtils(driver);
-        wait.until(new ExpectedCondition<Boolean>() {
+        until("ajax completion", new ExpectedCondition<Boolean>() {
 
             public Boolean apply(WebDriver driver) {
                 return js.isAjaxComplete();
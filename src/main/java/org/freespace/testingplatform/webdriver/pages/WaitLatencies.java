@@ -0,0 +1,234 @@
+package org.freespace.testingplatform.webdriver.pages;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.freespace.testingplatform.config.Config;
+import org.freespace.testingplatform.webdriver.pages.ObservingWait.Condition;
+import org.openqa.selenium.By;
+
+/**
+ * How long waits for each condition and locator took in this and previous runs, used to
+ * size the wait timeouts and the first polling interval. Waits for the same locator with
+ * different conditions are learned apart: a spinner appears quickly but may take long to
+ * go away.
+ * <p/>
+ * Only the latest {@link #MAX_SAMPLES} successful waits per locator are kept. A locator
+ * with at least {@link #MIN_SAMPLES} of them gets a timeout of {@code wait.timeout.multiplier}
+ * times its 99th percentile, but never less than {@link #MIN_TIMEOUT_MILLIS} and never more
+ * than the default timeout, so a missing element fails the test in seconds. Learning the
+ * timeouts is off while the multiplier is 0.
+ * <p/>
+ * Locators not waited for in {@link #MAX_AGE_DAYS} days are dropped from the file, and it
+ * keeps at most {@link #MAX_LOCATORS} of them, the most recently waited for.
+ */
+public class WaitLatencies {
+
+    static final int MAX_SAMPLES = 100;
+    static final int MIN_SAMPLES = 10;
+    static final long MIN_TIMEOUT_MILLIS = 5000;
+    static final int MAX_LOCATORS = 2000;
+    static final int MAX_AGE_DAYS = 30;
+    private static final char LAST_SEEN_SEPARATOR = ':';
+    private static final Logger log = Logger.getLogger(WaitLatencies.class);
+    private static WaitLatencies instance;
+
+    private final File file;
+    private final Map<String, LinkedList<Long>> samples = new HashMap<String, LinkedList<Long>>();
+    private final Map<String, List<Long>> observed = new HashMap<String, List<Long>>();
+    private final Map<String, Long> lastSeen = new HashMap<String, Long>();
+
+    private WaitLatencies(File file) {
+        this.file = file;
+        merge(samples, read(file, lastSeen));
+    }
+
+    public static synchronized WaitLatencies getInstance() {
+        if (instance == null) {
+            instance = new WaitLatencies(new File(Config.WAIT_LATENCIES_FILE));
+        }
+        return instance;
+    }
+
+    public synchronized void record(Condition condition, By by, long millis) {
+        String key = key(condition, by);
+        lastSeen.put(key, System.currentTimeMillis());
+        List<Long> latest = observed.get(key);
+        if (latest == null) {
+            latest = new ArrayList<Long>();
+            observed.put(key, latest);
+        }
+        latest.add(millis);
+        merge(samples, Collections.singletonMap(key, Collections.singletonList(millis)));
+    }
+
+    /**
+     * @return the learned timeout for the locator, or {@code defaultMillis} while too little is known
+     */
+    public synchronized long timeoutFor(Condition condition, By by, long defaultMillis) {
+        if (Config.WAIT_TIMEOUT_MULTIPLIER <= 0) {
+            return defaultMillis;
+        }
+        List<Long> latencies = samples.get(key(condition, by));
+        if (latencies == null || latencies.size() < MIN_SAMPLES) {
+            return defaultMillis;
+        }
+        long learned = Math.round(percentile(latencies, 99) * Config.WAIT_TIMEOUT_MULTIPLIER);
+        return Math.min(defaultMillis, Math.max(MIN_TIMEOUT_MILLIS, learned));
+    }
+
+    /**
+     * @return the median wait for the locator, or -1 if it has never been waited for
+     */
+    public synchronized long medianFor(Condition condition, By by) {
+        List<Long> latencies = samples.get(key(condition, by));
+        return latencies == null ? -1 : percentile(latencies, 50);
+    }
+
+    /**
+     * Writes the waits of this run, merged with whatever other processes saved meanwhile.
+     */
+    public synchronized void save() {
+        if (observed.isEmpty()) {
+            return;
+        }
+        try {
+            RandomAccessFile lockFile = new RandomAccessFile(new File(file.getPath() + ".lock"), "rw");
+            FileLock lock = lockFile.getChannel().lock();
+            try {
+                Map<String, LinkedList<Long>> stored = new HashMap<String, LinkedList<Long>>();
+                Map<String, Long> storedLastSeen = new HashMap<String, Long>();
+                merge(stored, read(file, storedLastSeen));
+                merge(stored, observed);
+                for (Map.Entry<String, Long> entry : lastSeen.entrySet()) {
+                    Long seen = storedLastSeen.get(entry.getKey());
+                    if (seen == null || seen < entry.getValue()) {
+                        storedLastSeen.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                prune(stored, storedLastSeen);
+                write(file, stored, storedLastSeen);
+                observed.clear();
+            } finally {
+                lock.release();
+                lockFile.close();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to save wait latencies to " + file, e);
+        }
+    }
+
+    private static String key(Condition condition, By by) {
+        return condition.name() + " " + by;
+    }
+
+    /**
+     * Drops the locators not waited for recently, and the least recently waited for ones
+     * beyond {@link #MAX_LOCATORS}.
+     */
+    private static void prune(Map<String, LinkedList<Long>> latencies, final Map<String, Long> lastSeen) {
+        long oldest = System.currentTimeMillis() - MAX_AGE_DAYS * 24L * 3600 * 1000;
+        List<String> keys = new ArrayList<String>();
+        for (String key : latencies.keySet()) {
+            Long seen = lastSeen.get(key);
+            if (seen != null && seen >= oldest) {
+                keys.add(key);
+            }
+        }
+        Collections.sort(keys, new Comparator<String>() {
+            public int compare(String one, String two) {
+                return lastSeen.get(two).compareTo(lastSeen.get(one));
+            }
+        });
+        latencies.keySet().retainAll(keys.subList(0, Math.min(MAX_LOCATORS, keys.size())));
+    }
+
+    private static long percentile(List<Long> latencies, int percent) {
+        List<Long> sorted = new ArrayList<Long>(latencies);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private static void merge(Map<String, LinkedList<Long>> target, Map<String, ? extends List<Long>> source) {
+        for (Map.Entry<String, ? extends List<Long>> entry : source.entrySet()) {
+            LinkedList<Long> latencies = target.get(entry.getKey());
+            if (latencies == null) {
+                latencies = new LinkedList<Long>();
+                target.put(entry.getKey(), latencies);
+            }
+            latencies.addAll(entry.getValue());
+            while (latencies.size() > MAX_SAMPLES) {
+                latencies.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Reads {@code key=lastSeen:latency,latency,...} lines. Lines written before the last
+     * seen time was stored read as never seen and are pruned on the next save.
+     */
+    private static Map<String, List<Long>> read(File file, Map<String, Long> lastSeen) {
+        Map<String, List<Long>> result = new HashMap<String, List<Long>>();
+        if (!file.exists()) {
+            return result;
+        }
+        Properties props = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read wait latencies from " + file, e);
+        }
+        for (String key : props.stringPropertyNames()) {
+            List<Long> latencies = new ArrayList<Long>();
+            String value = props.getProperty(key);
+            int separator = value.indexOf(LAST_SEEN_SEPARATOR);
+            try {
+                lastSeen.put(key, separator < 0 ? 0L : Long.valueOf(value.substring(0, separator).trim()));
+                for (String latency : StringUtils.split(value.substring(separator + 1), ',')) {
+                    latencies.add(Long.valueOf(latency.trim()));
+                }
+                result.put(key, latencies);
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed wait latencies of " + key);
+            }
+        }
+        return result;
+    }
+
+    private static void write(File file, Map<String, LinkedList<Long>> latencies, Map<String, Long> lastSeen)
+            throws IOException {
+        Properties props = new Properties();
+        for (Map.Entry<String, LinkedList<Long>> entry : latencies.entrySet()) {
+            props.setProperty(entry.getKey(),
+                    lastSeen.get(entry.getKey()) + String.valueOf(LAST_SEEN_SEPARATOR) + StringUtils.join(entry.getValue(), ','));
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            props.store(out, "Last wait time, then wait latencies in ms per condition and locator, oldest first");
+        } finally {
+            out.close();
+        }
+    }
+}
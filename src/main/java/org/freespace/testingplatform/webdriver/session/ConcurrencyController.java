@@ -0,0 +1,213 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.freespace.testingplatform.webdriver.TestDeadline;
+
+/**
+ * Limits how many sessions are borrowed from the pool at the same time, and moves the limit
+ * with the state of the host: every few seconds it looks at the CPU load, the free physical
+ * memory and the command latency of the browsers.
+ * <p/>
+ * When any of them shows that the browsers are starving each other the limit is halved,
+ * otherwise it grows by one session at a time while threads are waiting for a session.
+ * The limit never goes above {@code max}; the threads beyond it wait in
+ * {@link WebDriverPool#borrow()}. Sessions are returned after every test class, or after
+ * every test with {@code webdriver.release.per.test}, and a reduced limit takes effect as
+ * they are returned.
+ * <p/>
+ * A thread never waits longer than the wait timeout, nor beyond its {@link TestDeadline}.
+ * After the wait timeout it goes ahead above the adapted limit as long as fewer than
+ * {@code max} sessions are in use, and fails the borrow otherwise: the adapted limit only
+ * delays sessions, {@code max} is the hard bound. With {@code max} 0 there is no limit at
+ * all; the configured default is the number of processors.
+ */
+public class ConcurrencyController {
+
+    private static final Logger log = Logger.getLogger(ConcurrencyController.class);
+    private static final long PERIOD_SECONDS = 5;
+    private static final double LATENCY_ALARM_FACTOR = 3;
+
+    private final int min;
+    private final int max;
+    private final double maxLoadPerCpu;
+    private final int minFreeMemoryPercent;
+    private final long waitMillis;
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("webdriver-concurrency"));
+    private int limit;
+    private int active;
+    private int waiting;
+    private double baselineLatency;
+
+    /**
+     * @param min                  the limit to start with and never go below
+     * @param max                  the most sessions ever in use at once, 0 disables the limit
+     * @param maxLoadPerCpu        system load average per processor above which the limit shrinks
+     * @param minFreeMemoryPercent free physical memory below which the limit shrinks
+     * @param waitMillis           how long a thread waits for a session below the adapted limit
+     */
+    public ConcurrencyController(int min, int max, double maxLoadPerCpu, int minFreeMemoryPercent,
+                                 long waitMillis) {
+        this.min = Math.max(1, min);
+        this.max = max;
+        this.maxLoadPerCpu = maxLoadPerCpu;
+        this.minFreeMemoryPercent = minFreeMemoryPercent;
+        this.waitMillis = waitMillis;
+        this.limit = this.min;
+    }
+
+    /**
+     * Starts adjusting the limit to the sessions of the pool.
+     */
+    void watch(final WebDriverPool pool) {
+        if (max <= 0) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    adjust(pool.getSessions());
+                } catch (RuntimeException e) {
+                    log.warn("Unable to adjust concurrency", e);
+                }
+            }
+        }, PERIOD_SECONDS, PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+        synchronized (this) {
+            limit = Integer.MAX_VALUE;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until one more session may be used.
+     *
+     * @throws IllegalStateException if {@code max} sessions are still in use after the wait timeout
+     */
+    void acquire() {
+        long start = TestDeadline.enter();
+        try {
+            acquire(TestDeadline.limit(waitMillis));
+        } finally {
+            TestDeadline.exit("waiting for a browser session", start);
+        }
+    }
+
+    private synchronized void acquire(long timeoutMillis) {
+        long until = System.currentTimeMillis() + timeoutMillis;
+        waiting++;
+        try {
+            while (max > 0 && active >= limit) {
+                long left = until - System.currentTimeMillis();
+                if (left <= 0) {
+                    break;
+                }
+                wait(left);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a browser session", e);
+        } finally {
+            waiting--;
+        }
+        if (max > 0 && active >= limit) {
+            TestDeadline.check();
+            if (active >= max) {
+                throw new IllegalStateException("No browser session became available within " + timeoutMillis
+                        + " ms, " + active + " in use");
+            }
+            log.warn("Waited " + timeoutMillis + " ms for a browser session, going above the limit of " + limit);
+        }
+        active++;
+    }
+
+    synchronized void release() {
+        active--;
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    private void adjust(List<WebDriverSession> sessions) {
+        String pressure = findPressure(sessions);
+        synchronized (this) {
+            if (pressure != null) {
+                int reduced = Math.max(min, limit / 2);
+                if (reduced < limit) {
+                    log.info("Reducing concurrent sessions from " + limit + " to " + reduced + ", " + pressure);
+                    limit = reduced;
+                }
+            } else if (waiting > 0 && active >= limit && limit < max) {
+                limit++;
+                log.info("Raising concurrent sessions to " + limit);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return a description of what the host is short of, or null if there is headroom
+     */
+    private String findPressure(List<WebDriverSession> sessions) {
+        double load = os.getSystemLoadAverage();
+        if (load >= 0 && maxLoadPerCpu > 0 && load / os.getAvailableProcessors() > maxLoadPerCpu) {
+            return "load average is " + load;
+        }
+        long freeMemoryPercent = getFreeMemoryPercent();
+        if (freeMemoryPercent >= 0 && freeMemoryPercent < minFreeMemoryPercent) {
+            return "only " + freeMemoryPercent + "% of memory is free";
+        }
+        double latency = 0;
+        int measured = 0;
+        for (WebDriverSession session : sessions) {
+            if (session.getCommandLatency() > 0) {
+                latency += session.getCommandLatency();
+                measured++;
+            }
+        }
+        if (measured == 0) {
+            return null;
+        }
+        latency /= measured;
+        if (baselineLatency == 0 || latency < baselineLatency) {
+            baselineLatency = latency;
+        }
+        if (latency > baselineLatency * LATENCY_ALARM_FACTOR) {
+            return "commands take " + Math.round(latency) + " ms on average instead of " + Math.round(baselineLatency);
+        }
+        return null;
+    }
+
+    /**
+     * The physical memory figures are only available from the Sun/Oracle flavour of the
+     * operating system bean, so they are read reflectively.
+     *
+     * @return percentage of free physical memory, or -1 if the JVM does not tell
+     */
+    private long getFreeMemoryPercent() {
+        try {
+            Method free = os.getClass().getMethod("getFreePhysicalMemorySize");
+            Method total = os.getClass().getMethod("getTotalPhysicalMemorySize");
+            free.setAccessible(true);
+            total.setAccessible(true);
+            long totalMemory = (Long) total.invoke(os);
+            return totalMemory > 0 ? (Long) free.invoke(os) * 100 / totalMemory : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
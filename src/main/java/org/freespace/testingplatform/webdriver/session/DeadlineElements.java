@@ -0,0 +1,134 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.freespace.testingplatform.webdriver.TestDeadline;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.Locatable;
+import org.openqa.selenium.internal.WrapsDriver;
+import org.openqa.selenium.internal.WrapsElement;
+
+/**
+ * Wraps the elements handed out by {@link PooledWebDriver} so that element commands, such
+ * as click, sendKeys or getText, check the {@link TestDeadline} and are accounted to it like
+ * driver commands. Elements found inside them are wrapped the same way.
+ * <p/>
+ * The EventFiringWebDriver only recognizes its own elements among script arguments, so
+ * {@link #unwrap(Object)} has to be applied to arguments before they reach it.
+ */
+class DeadlineElements {
+
+    /**
+     * @return the value with every element in it wrapped, lists included
+     */
+    static Object wrap(Object value) {
+        if (value instanceof WebElement && !isWrapped(value)) {
+            return proxy((WebElement) value);
+        }
+        if (value instanceof List) {
+            List<Object> wrapped = new ArrayList<Object>();
+            for (Object item : (List<?>) value) {
+                wrapped.add(wrap(item));
+            }
+            return wrapped;
+        }
+        return value;
+    }
+
+    /**
+     * @return the value with every element wrapped here replaced by the element itself, lists
+     *         and maps included
+     */
+    static Object unwrap(Object value) {
+        if (isWrapped(value)) {
+            return ((Handler) Proxy.getInvocationHandler(value)).element;
+        }
+        if (value instanceof List) {
+            List<Object> unwrapped = new ArrayList<Object>();
+            for (Object item : (List<?>) value) {
+                unwrapped.add(unwrap(item));
+            }
+            return unwrapped;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> unwrapped = new LinkedHashMap<Object, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                unwrapped.put(entry.getKey(), unwrap(entry.getValue()));
+            }
+            return unwrapped;
+        }
+        return value;
+    }
+
+    static Object[] unwrapAll(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Object[] unwrapped = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            unwrapped[i] = args[i] instanceof Object[] ? unwrapAll((Object[]) args[i]) : unwrap(args[i]);
+        }
+        return unwrapped;
+    }
+
+    private static boolean isWrapped(Object value) {
+        return value != null && Proxy.isProxyClass(value.getClass()) && Proxy.getInvocationHandler(value) instanceof Handler;
+    }
+
+    private static WebElement proxy(WebElement element) {
+        List<Class<?>> interfaces = new ArrayList<Class<?>>();
+        interfaces.add(WebElement.class);
+        interfaces.add(WrapsElement.class);
+        if (element instanceof Locatable) {
+            interfaces.add(Locatable.class);
+        }
+        if (element instanceof WrapsDriver) {
+            interfaces.add(WrapsDriver.class);
+        }
+        return (WebElement) Proxy.newProxyInstance(DeadlineElements.class.getClassLoader(),
+                interfaces.toArray(new Class[interfaces.size()]), new Handler(element));
+    }
+
+    private static class Handler implements InvocationHandler {
+        private final WebElement element;
+
+        Handler(WebElement element) {
+            this.element = element;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("equals".equals(name) && method.getDeclaringClass() == Object.class) {
+                return element.equals(unwrap(args[0]));
+            }
+            if ("getWrappedElement".equals(name)) {
+                return element;
+            }
+            if (method.getDeclaringClass() == Object.class || "getWrappedDriver".equals(name)) {
+                return call(method, args);
+            }
+            TestDeadline.check();
+            long start = TestDeadline.enter();
+            try {
+                return wrap(call(method, args));
+            } finally {
+                TestDeadline.exit("element." + name, start);
+            }
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(element, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * The application specific UI login, used by {@link LoginSnapshotCache} whenever there is no
+ * usable snapshot of an authenticated session.
+ */
+public interface LoginFlow {
+
+    /**
+     * Logs in through the UI, leaving the browser on a page of the application.
+     */
+    void login(WebDriver driver, String login, String password);
+
+    /**
+     * Tells whether the page currently open belongs to an authenticated session. Called
+     * after a snapshot has been restored, to detect sessions the server has already expired.
+     */
+    boolean isLoggedIn(WebDriver driver);
+}
@@ -0,0 +1,80 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Logs every user in through the UI once per environment and afterwards restores the
+ * captured {@link SessionSnapshot} into fresh or reset browser sessions.
+ * <p/>
+ * A snapshot is dropped and the UI login repeated when it is older than the configured
+ * time to live, when one of its cookies has expired, or when the restored page turns out
+ * not to be authenticated. Threads that need the UI login for the same user take turns,
+ * so that only the first one goes through the login page and the others restore its
+ * snapshot.
+ */
+public class LoginSnapshotCache {
+
+    private static final Logger log = Logger.getLogger(LoginSnapshotCache.class);
+
+    private final String environment;
+    private final long ttlMillis;
+    private final ConcurrentMap<String, SessionSnapshot> snapshots = new ConcurrentHashMap<String, SessionSnapshot>();
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+    public LoginSnapshotCache(String environment, long ttlMillis) {
+        this.environment = environment;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public void ensureLoggedIn(WebDriver driver, LoginFlow flow, String login, String password) {
+        String key = login + "@" + environment;
+        SessionSnapshot tried = snapshots.get(key);
+        if (restore(driver, flow, key, tried)) {
+            return;
+        }
+        synchronized (lockFor(key)) {
+            // another thread may have logged in while this one was waiting
+            SessionSnapshot current = snapshots.get(key);
+            if (current != tried && restore(driver, flow, key, current)) {
+                return;
+            }
+            snapshots.remove(key);
+            long start = System.currentTimeMillis();
+            flow.login(driver, login, password);
+            SessionSnapshot snapshot = SessionSnapshot.capture(driver);
+            snapshots.put(key, snapshot);
+            log.info("Logged in " + key + " in " + (System.currentTimeMillis() - start) + " ms, captured " + snapshot);
+        }
+    }
+
+    private boolean restore(WebDriver driver, LoginFlow flow, String key, SessionSnapshot snapshot) {
+        if (snapshot == null || snapshot.isExpired(ttlMillis)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        snapshot.restore(driver);
+        if (flow.isLoggedIn(driver)) {
+            log.debug("Restored " + snapshot + " for " + key + " in " + (System.currentTimeMillis() - start) + " ms");
+            return true;
+        }
+        log.info("Session snapshot for " + key + " is no longer accepted, logging in again");
+        return false;
+    }
+
+    private Object lockFor(String key) {
+        Object lock = locks.get(key);
+        if (lock == null) {
+            locks.putIfAbsent(key, new Object());
+            lock = locks.get(key);
+        }
+        return lock;
+    }
+
+    public void invalidate(String login) {
+        snapshots.remove(login + "@" + environment);
+    }
+}
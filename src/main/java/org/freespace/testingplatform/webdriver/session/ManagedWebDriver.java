@@ -0,0 +1,16 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import org.openqa.selenium.HasInputDevices;
+import org.openqa.selenium.HasTouchScreen;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.internal.WrapsDriver;
+
+/**
+ * The driver type injected into tests: everything {@code EventFiringWebDriver} offers plus
+ * control over the pooled session behind it.
+ */
+public interface ManagedWebDriver extends WebDriver, JavascriptExecutor, TakesScreenshot, WrapsDriver,
+        HasInputDevices, HasTouchScreen, SessionControl {
+}
@@ -0,0 +1,120 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.apache.log4j.Logger;
+import org.freespace.testingplatform.webdriver.TestDeadline;
+
+/**
+ * Handle on a {@link WebDriverPool}: borrows a session on the first command and forwards
+ * every call to it until the session is released back to the pool.
+ * <p/>
+ * {@code quit()} does not shut the browser down for good, it only discards the current
+ * session; the next command transparently launches or borrows another one. The same
+ * happens when the current session has been found dead.
+ */
+public class PooledWebDriver implements InvocationHandler, SessionControl {
+
+    private static final Logger log = Logger.getLogger(PooledWebDriver.class);
+
+    private final WebDriverPool pool;
+    private WebDriverSession session;
+    private boolean reset;
+
+    private PooledWebDriver(WebDriverPool pool) {
+        this.pool = pool;
+    }
+
+    public static ManagedWebDriver create(WebDriverPool pool) {
+        return (ManagedWebDriver) Proxy.newProxyInstance(ManagedWebDriver.class.getClassLoader(),
+                new Class[]{ManagedWebDriver.class}, new PooledWebDriver(pool));
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        try {
+            if (method.getDeclaringClass() == SessionControl.class) {
+                return method.invoke(this, args);
+            }
+            if ("quit".equals(method.getName())) {
+                discardSession();
+                return null;
+            }
+            return command(method, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Forwards a driver command, unless the test has used up its {@link TestDeadline}. The
+     * elements it returns check the deadline on their own commands, see {@link DeadlineElements}.
+     */
+    private Object command(Method method, Object[] args) throws IllegalAccessException, InvocationTargetException {
+        TestDeadline.check();
+        synchronized (this) {
+            reset = false;
+        }
+        long start = TestDeadline.enter();
+        try {
+            return DeadlineElements.wrap(method.invoke(currentSession().getDriver(), DeadlineElements.unwrapAll(args)));
+        } finally {
+            TestDeadline.exit("driver." + method.getName(), start);
+        }
+    }
+
+    public synchronized void checkSession() {
+        if (session != null && (session.isDead() || !session.isAlive())) {
+            discardSession();
+        }
+    }
+
+    public synchronized void resetSession() {
+        if (session != null && !pool.reset(session)) {
+            discardSession();
+        }
+        reset = session != null;
+    }
+
+    public synchronized void releaseSession() {
+        if (session != null) {
+            // no command since the last reset, do not reset it again
+            pool.release(session, !reset);
+            session = null;
+        }
+    }
+
+    private synchronized void discardSession() {
+        if (session != null) {
+            pool.discard(session);
+            session = null;
+        }
+    }
+
+    private synchronized WebDriverSession currentSession() {
+        if (session != null && session.isDead()) {
+            log.warn("Replacing dead " + session);
+            discardSession();
+        }
+        if (session == null) {
+            session = pool.borrow();
+        }
+        return session;
+    }
+
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if ("equals".equals(name)) {
+            return proxy == args[0];
+        }
+        if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        }
+        return "PooledWebDriver(" + session + ")";
+    }
+}
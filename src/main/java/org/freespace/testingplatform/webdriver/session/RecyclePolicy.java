@@ -0,0 +1,62 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+/**
+ * Decides when a long-lived session has accumulated enough state (history, caches, leaked
+ * memory) to be worth replacing with a fresh browser. Only consulted between tests, when
+ * the session is reset, so a test never loses its browser half way through.
+ * <p/>
+ * Any threshold set to 0 is ignored; the configured defaults recycle a session after
+ * 5000 commands or an hour, and an HtmlUnit session at 80% heap. The heap threshold only applies to HtmlUnit sessions,
+ * which keep all of their state in the heap of this JVM; it looks at the heap as left by
+ * the last garbage collection, so garbage not yet collected does not count.
+ */
+public class RecyclePolicy {
+
+    private final long maxCommands;
+    private final long maxAgeMillis;
+    private final int maxHeapPercent;
+
+    public RecyclePolicy(long maxCommands, long maxAgeMillis, int maxHeapPercent) {
+        this.maxCommands = maxCommands;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxHeapPercent = maxHeapPercent;
+    }
+
+    /**
+     * @return why the session should be recycled, or null if it can be reused
+     */
+    public String reasonToRecycle(WebDriverSession session) {
+        if (maxCommands > 0 && session.getCommandCount() >= maxCommands) {
+            return "executed " + session.getCommandCount() + " commands";
+        }
+        long age = System.currentTimeMillis() - session.getCreatedAt();
+        if (maxAgeMillis > 0 && age >= maxAgeMillis) {
+            return "is " + age / 1000 + " s old";
+        }
+        if (maxHeapPercent > 0 && session.getDriver().getWrappedDriver() instanceof HtmlUnitDriver) {
+            long percent = heapUsedAfterCollection() * 100 / Runtime.getRuntime().maxMemory();
+            if (percent >= maxHeapPercent) {
+                return "heap is " + percent + "% full after garbage collection";
+            }
+        }
+        return null;
+    }
+
+    private static long heapUsedAfterCollection() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+}
@@ -0,0 +1,25 @@
+package org.freespace.testingplatform.webdriver.session;
+
+/**
+ * Session management operations exposed by the pooled driver handed out to tests.
+ */
+public interface SessionControl {
+
+    /**
+     * Probes the current session with a cheap liveness check and replaces it if the browser
+     * has died or was killed by the {@link SessionWatchdog}.
+     */
+    void checkSession();
+
+    /**
+     * Isolates the session from the test that just finished, using the configured
+     * {@link SessionReset} strategy. A recycled session is replaced on the next command.
+     */
+    void resetSession();
+
+    /**
+     * Returns the underlying browser session to the pool. The next command issued through
+     * the driver borrows a session again.
+     */
+    void releaseSession();
+}
@@ -0,0 +1,113 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Ways of isolating the next test from the state left behind by the previous one, ordered
+ * from the cheapest to the most thorough. Every strategy includes what the cheaper ones do.
+ * <p/>
+ * Configured with the {@code session.reset} property, e.g. {@code session.reset=storage}.
+ */
+public enum SessionReset {
+
+    /**
+     * Deletes the cookies visible from the current page.
+     */
+    COOKIES {
+        @Override
+        protected boolean apply(WebDriver driver) {
+            driver.manage().deleteAllCookies();
+            return true;
+        }
+    },
+
+    /**
+     * Also clears local and session storage of the current page.
+     */
+    STORAGE {
+        @Override
+        protected boolean apply(WebDriver driver) {
+            COOKIES.apply(driver);
+            JsUtils.execute(CLEAR_STORAGE, driver);
+            return true;
+        }
+    },
+
+    /**
+     * Also leaves the application for about:blank, dropping page scripts and timers.
+     */
+    BLANK {
+        @Override
+        protected boolean apply(WebDriver driver) {
+            STORAGE.apply(driver);
+            driver.get("about:blank");
+            return true;
+        }
+    },
+
+    /**
+     * Quits the browser; the next test gets a fresh session.
+     */
+    RECYCLE {
+        @Override
+        protected boolean apply(WebDriver driver) {
+            return false;
+        }
+    };
+
+    private static final Logger log = Logger.getLogger(SessionReset.class);
+    private static final String CLEAR_STORAGE =
+            "try { window.localStorage && window.localStorage.clear(); } catch (e) { }"
+                    + "try { window.sessionStorage && window.sessionStorage.clear(); } catch (e) { }";
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * @return false if the session can not be reused and has to be quit
+     */
+    protected abstract boolean apply(WebDriver driver);
+
+    /**
+     * Resets the session and records how long it took.
+     *
+     * @return false if the session can not be reused and has to be quit
+     */
+    public boolean reset(WebDriverSession session) {
+        long start = System.nanoTime();
+        try {
+            return apply(session.getDriver());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            count.incrementAndGet();
+            nanos.addAndGet(elapsed);
+            if (log.isDebugEnabled()) {
+                log.debug(this + " reset of " + session + " took " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+            }
+        }
+    }
+
+    public static SessionReset forName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * @return count and average duration of the resets performed with every strategy used so far
+     */
+    public static String statistics() {
+        StringBuilder result = new StringBuilder("Session resets:");
+        for (SessionReset reset : values()) {
+            long resets = reset.count.get();
+            if (resets > 0) {
+                result.append(' ').append(reset).append(' ').append(resets).append(" x ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(reset.nanos.get() / resets)).append(" ms");
+            }
+        }
+        return result.toString();
+    }
+}
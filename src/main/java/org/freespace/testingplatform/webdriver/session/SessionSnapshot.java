@@ -0,0 +1,124 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Cookies plus local and session storage of an authenticated browser session, enough to
+ * restore the session in another browser without going through the login page again.
+ */
+public class SessionSnapshot {
+
+    private static final String DUMP_STORAGE =
+            "var dump = function(name) {"
+                    + "  var items = [], storage;"
+                    + "  try { storage = window[name]; } catch (e) { }"
+                    + "  if (!storage) { return items; }"
+                    + "  for (var i = 0; i < storage.length; i++) {"
+                    + "    var key = storage.key(i);"
+                    + "    items.push([key, storage.getItem(key)]);"
+                    + "  }"
+                    + "  return items;"
+                    + "};"
+                    + "return [dump('localStorage'), dump('sessionStorage')];";
+
+    private static final String FILL_STORAGE =
+            "var fill = function(name, items) {"
+                    + "  var storage;"
+                    + "  try { storage = window[name]; } catch (e) { }"
+                    + "  if (!storage) { return; }"
+                    + "  for (var i = 0; i < items.length; i++) {"
+                    + "    storage.setItem(items[i][0], items[i][1]);"
+                    + "  }"
+                    + "};"
+                    + "fill('localStorage', arguments[0]);"
+                    + "fill('sessionStorage', arguments[1]);";
+
+    /**
+     * A path no application serves: a 404 page is answered on the application's own domain,
+     * where a protected page would redirect an anonymous browser to the login domain.
+     */
+    private static final String NEUTRAL_PATH = "/webdriver-session-restore-404";
+
+    private final String url;
+    private final Set<Cookie> cookies;
+    private final List<List<String>> localStorage;
+    private final List<List<String>> sessionStorage;
+    private final long capturedAt;
+
+    private SessionSnapshot(String url, Set<Cookie> cookies, List<List<String>> localStorage,
+                            List<List<String>> sessionStorage) {
+        this.url = url;
+        this.cookies = cookies;
+        this.localStorage = localStorage;
+        this.sessionStorage = sessionStorage;
+        this.capturedAt = System.currentTimeMillis();
+    }
+
+    public static SessionSnapshot capture(WebDriver driver) {
+        List<List<List<String>>> storage = JsUtils.execute(DUMP_STORAGE, driver);
+        return new SessionSnapshot(driver.getCurrentUrl(), driver.manage().getCookies(),
+                storage.get(0), storage.get(1));
+    }
+
+    /**
+     * Opens the captured page with the captured cookies and storage in place. They are set from
+     * a not existing page of the same origin first, as cookies and storage can only be set for
+     * the domain of the page currently open.
+     */
+    public void restore(WebDriver driver) {
+        driver.get(neutralPageOf(url));
+        WebDriver.Options options = driver.manage();
+        options.deleteAllCookies();
+        for (Cookie cookie : cookies) {
+            options.addCookie(new Cookie(cookie.getName(), cookie.getValue(), cookie.getDomain(), cookie.getPath(),
+                    cookie.getExpiry(), cookie.isSecure()));
+        }
+        JsUtils.execute(FILL_STORAGE, driver, localStorage, sessionStorage);
+        driver.get(url);
+    }
+
+    private static String neutralPageOf(String url) {
+        try {
+            URL page = new URL(url);
+            return new URL(page.getProtocol(), page.getHost(), page.getPort(), NEUTRAL_PATH).toString();
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    /**
+     * @return true if the snapshot is older than {@code ttlMillis} or one of its cookies has
+     *         expired in the meantime
+     */
+    public boolean isExpired(long ttlMillis) {
+        long now = System.currentTimeMillis();
+        if (now - capturedAt > ttlMillis) {
+            return true;
+        }
+        for (Cookie cookie : cookies) {
+            Date expiry = cookie.getExpiry();
+            if (expiry != null && expiry.getTime() <= now) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        List<String> names = new ArrayList<String>();
+        for (Cookie cookie : cookies) {
+            names.add(cookie.getName());
+        }
+        return "snapshot of " + url + " with cookies " + names;
+    }
+}
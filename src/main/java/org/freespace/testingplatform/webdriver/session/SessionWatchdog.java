@@ -0,0 +1,59 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Kills pooled sessions whose current command runs past the per-command deadline.
+ * <p/>
+ * Killing the browser makes the stuck call fail right away instead of after the page
+ * object timeouts, and the driver handle holding the session swaps in a fresh one on its
+ * next command, so one hung browser no longer fails the rest of the suite.
+ */
+public class SessionWatchdog {
+
+    private static final Logger log = Logger.getLogger(SessionWatchdog.class);
+
+    private final WebDriverPool pool;
+    private final long commandTimeoutMillis;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("webdriver-watchdog"));
+
+    /**
+     * @param commandTimeoutMillis per-command deadline, 0 disables the watchdog
+     */
+    public SessionWatchdog(WebDriverPool pool, long commandTimeoutMillis) {
+        this.pool = pool;
+        this.commandTimeoutMillis = commandTimeoutMillis;
+    }
+
+    public void start() {
+        if (commandTimeoutMillis <= 0) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                check();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void check() {
+        long now = System.currentTimeMillis();
+        for (WebDriverSession session : pool.getSessions()) {
+            long duration = session.getCommandDuration(now);
+            if (duration > commandTimeoutMillis) {
+                log.error(session + " has been running '" + session.getCommand() + "' for " + duration
+                        + " ms, killing the browser");
+                pool.kill(session);
+            }
+        }
+    }
+}
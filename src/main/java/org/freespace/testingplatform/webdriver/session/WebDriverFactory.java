@@ -0,0 +1,67 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.util.concurrent.TimeUnit;
+
+import org.freespace.testingplatform.config.Config;
+import org.freespace.testingplatform.webdriver.listneres.ListenerConfig;
+import org.freespace.testingplatform.webdriver.listneres.LoggingWebDriverEventListener;
+import org.freespace.testingplatform.webdriver.listneres.StorageCssErrorHandler;
+import org.freespace.testingplatform.webdriver.listneres.StorageJavaScriptErrorListener;
+import org.freespace.testingplatform.webdriver.utils.DomGeneration;
+import org.freespace.testingplatform.webdriver.utils.JsUtils;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.openqa.selenium.ie.InternetExplorerDriver;
+import org.openqa.selenium.remote.CapabilityType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
+
+/**
+ * Launches browser sessions of the type configured by {@link Config#WEBDRIVER}.
+ */
+public class WebDriverFactory {
+
+    private static final String HTMLUNIT = "htmlunit";
+    private static final String FIREFOX = "firefox";
+    private static final String IEXPLORER = "iexplorer";
+    /**
+     * Leaves room for the in-page waits, which run for up to 10 s per script.
+     */
+    private static final long SCRIPT_TIMEOUT_SECONDS = 30;
+    public static final String MAXIMIZE_BROWSER_WINDOW = "if (window.screen) {window.moveTo(0, 0);window.resizeTo(window.screen.availWidth,window.screen.availHeight);};";
+
+    public EventFiringWebDriver create() {
+        WebDriver driver;
+        if (HTMLUNIT.equals(Config.WEBDRIVER)) {
+            driver = new HtmlUnitDriver();
+            ((HtmlUnitDriver) driver).setJavascriptEnabled(true);
+            StorageJavaScriptErrorListener javaScriptErrorListener = new StorageJavaScriptErrorListener();
+            StorageCssErrorHandler cssErrorHandler = new StorageCssErrorHandler();
+            ListenerConfig.setJSErrorListenerToWebClient(driver, javaScriptErrorListener);
+            ListenerConfig.setCssErrorHandlerToWebClient(driver, cssErrorHandler);
+        } else if (FIREFOX.equals(Config.WEBDRIVER)) {
+            driver = new FirefoxDriver();
+            executeJavascript(driver, MAXIMIZE_BROWSER_WINDOW);
+        } else if (IEXPLORER.equals(Config.WEBDRIVER)) {
+            DesiredCapabilities ieCapabilities = DesiredCapabilities.internetExplorer();
+            ieCapabilities.setCapability(InternetExplorerDriver.INTRODUCE_FLAKINESS_BY_IGNORING_SECURITY_DOMAINS, true);
+            ieCapabilities.setCapability(CapabilityType.ForSeleniumServer.ENSURING_CLEAN_SESSION, true);
+            driver = new InternetExplorerDriver(ieCapabilities);
+        } else {
+            throw new RuntimeException("You must define webdriver type");
+        }
+        driver.manage().timeouts().setScriptTimeout(SCRIPT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        LoggingWebDriverEventListener eventListener = new LoggingWebDriverEventListener();
+        EventFiringWebDriver eventFiring = new EventFiringWebDriver(driver).register(eventListener)
+                .register(DomGeneration.of(driver));
+        JsUtils.register(eventFiring);
+        return eventFiring;
+    }
+
+    private static Object executeJavascript(WebDriver driver, String script) {
+        JavascriptExecutor js = (JavascriptExecutor) driver;
+        return js.executeScript(script);
+    }
+}
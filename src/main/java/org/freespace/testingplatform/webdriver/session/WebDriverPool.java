@@ -0,0 +1,267 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps launched browsers alive between tests so that the start-up cost is paid once per
+ * session instead of once per test class or suite.
+ * <p/>
+ * Sessions are checked with a liveness probe when borrowed and reset with the configured
+ * {@link SessionReset} strategy when returned. A session that fails either step is quit
+ * and replaced by a fresh one on the next borrow, and so is a session that the
+ * {@link RecyclePolicy} considers worn out.
+ * <p/>
+ * Browsers are launched in the background: {@link #prewarm(int)} returns immediately and
+ * {@link #borrow()} only blocks until the first pending launch has finished, so browser
+ * start-up overlaps with whatever the caller does in the meantime. A launch that failed in
+ * the background is not reported to the borrower, who gets another session instead.
+ * <p/>
+ * How many sessions are borrowed at once is bounded by the {@link ConcurrencyController}.
+ */
+public class WebDriverPool {
+
+    private static final Logger log = Logger.getLogger(WebDriverPool.class);
+
+    private final WebDriverFactory factory;
+    private final SessionReset sessionReset;
+    private final RecyclePolicy recyclePolicy;
+    private final ConcurrencyController concurrency;
+    private final LinkedList<WebDriverSession> idle = new LinkedList<WebDriverSession>();
+    private final Set<WebDriverSession> sessions = new HashSet<WebDriverSession>();
+    private final Set<WebDriverSession> borrowed = new HashSet<WebDriverSession>();
+    private final LinkedList<Future<WebDriverSession>> pending = new LinkedList<Future<WebDriverSession>>();
+    private final ExecutorService launcher = Executors.newCachedThreadPool(new DaemonThreadFactory("webdriver-launcher"));
+    private final DaemonThreadFactory killers = new DaemonThreadFactory("webdriver-killer");
+    private boolean shutdown;
+
+    public WebDriverPool(WebDriverFactory factory, SessionReset sessionReset, RecyclePolicy recyclePolicy,
+                         ConcurrencyController concurrency) {
+        this.factory = factory;
+        this.sessionReset = sessionReset;
+        this.recyclePolicy = recyclePolicy;
+        this.concurrency = concurrency;
+        concurrency.watch(this);
+    }
+
+    /**
+     * Starts launching browsers in the background until the pool holds, or is about to hold,
+     * at least {@code size} sessions.
+     */
+    public synchronized void prewarm(int size) {
+        checkNotShutdown();
+        for (int i = sessions.size() + pending.size(); i < size; i++) {
+            pending.addLast(launcher.submit(new Callable<WebDriverSession>() {
+                public WebDriverSession call() {
+                    return launch();
+                }
+            }));
+        }
+    }
+
+    public WebDriverSession borrow() {
+        concurrency.acquire();
+        boolean acquired = false;
+        try {
+            WebDriverSession session = take();
+            synchronized (this) {
+                borrowed.add(session);
+            }
+            acquired = true;
+            return session;
+        } finally {
+            if (!acquired) {
+                concurrency.release();
+            }
+        }
+    }
+
+    private WebDriverSession take() {
+        while (true) {
+            WebDriverSession session;
+            Future<WebDriverSession> launching = null;
+            synchronized (this) {
+                checkNotShutdown();
+                session = idle.pollFirst();
+                if (session == null) {
+                    launching = pending.pollFirst();
+                }
+            }
+            if (launching != null) {
+                session = await(launching);
+                if (session != null) {
+                    return session;
+                }
+                continue;
+            }
+            if (session == null) {
+                return launch();
+            }
+            if (session.isAlive()) {
+                log.debug("Borrowed " + session);
+                return session;
+            }
+            discard(session);
+        }
+    }
+
+    public void release(WebDriverSession session) {
+        release(session, true);
+    }
+
+    /**
+     * @param reset false if the session has been reset since its last command
+     */
+    public void release(WebDriverSession session, boolean reset) {
+        giveBack(session);
+        if (reset && !reset(session)) {
+            discard(session);
+            return;
+        }
+        synchronized (this) {
+            if (!shutdown) {
+                // most recently used first, its browser caches are the warmest
+                idle.addFirst(session);
+                log.debug("Returned " + session);
+                return;
+            }
+        }
+        discard(session);
+    }
+
+    public void discard(WebDriverSession session) {
+        giveBack(session);
+        synchronized (this) {
+            sessions.remove(session);
+            idle.remove(session);
+        }
+        log.info("Quitting " + session);
+        session.quit();
+    }
+
+    /**
+     * Kills a session whose browser stopped responding. It is quit on a separate thread,
+     * because quitting a hung browser may hang as well; whoever holds the session replaces
+     * it on its next command.
+     */
+    public void kill(final WebDriverSession session) {
+        session.markDead();
+        giveBack(session);
+        synchronized (this) {
+            sessions.remove(session);
+            idle.remove(session);
+        }
+        killers.newThread(new Runnable() {
+            public void run() {
+                session.quit();
+            }
+        }).start();
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    public synchronized List<WebDriverSession> getSessions() {
+        return new ArrayList<WebDriverSession>(sessions);
+    }
+
+    public void shutdown() {
+        List<WebDriverSession> toQuit;
+        synchronized (this) {
+            shutdown = true;
+            toQuit = new ArrayList<WebDriverSession>(sessions);
+            sessions.clear();
+            idle.clear();
+            pending.clear();
+        }
+        concurrency.stop();
+        launcher.shutdown();
+        log.info(SessionReset.statistics());
+        for (WebDriverSession session : toQuit) {
+            log.info("Quitting " + session);
+            session.quit();
+        }
+        try {
+            // browsers still starting up quit themselves once launched, see launch()
+            launcher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private WebDriverSession launch() {
+        long start = System.currentTimeMillis();
+        WebDriverSession session = new WebDriverSession(factory.create());
+        log.info("Launched " + session + " in " + (System.currentTimeMillis() - start) + " ms");
+        synchronized (this) {
+            if (!shutdown) {
+                sessions.add(session);
+                return session;
+            }
+        }
+        session.quit();
+        throw new IllegalStateException("WebDriver pool is shut down");
+    }
+
+    /**
+     * @return the launched session or null if the launch failed
+     */
+    private WebDriverSession await(Future<WebDriverSession> launching) {
+        try {
+            return launching.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for browser launch", e);
+        } catch (ExecutionException e) {
+            log.warn("Background browser launch failed, launching another one: " + e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Isolates the session from the test that used it last.
+     *
+     * @return false if the session has to be discarded instead of reused
+     */
+    public boolean reset(WebDriverSession session) {
+        String reason = recyclePolicy.reasonToRecycle(session);
+        if (reason != null) {
+            log.info("Recycling " + session + ", it " + reason);
+            return false;
+        }
+        try {
+            return sessionReset.reset(session);
+        } catch (Exception e) {
+            log.warn("Unable to reset " + session + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void giveBack(WebDriverSession session) {
+        boolean wasBorrowed;
+        synchronized (this) {
+            wasBorrowed = borrowed.remove(session);
+        }
+        if (wasBorrowed) {
+            concurrency.release();
+        }
+    }
+
+    private void checkNotShutdown() {
+        if (shutdown) {
+            throw new IllegalStateException("WebDriver pool is shut down");
+        }
+    }
+}
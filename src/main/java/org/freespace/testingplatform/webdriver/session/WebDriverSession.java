@@ -0,0 +1,217 @@
+package org.freespace.testingplatform.webdriver.session;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+import org.openqa.selenium.support.events.AbstractWebDriverEventListener;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
+
+/**
+ * A single launched browser together with the bookkeeping the pool needs to decide
+ * whether it can still be handed out.
+ * <p/>
+ * The session keeps track of the command currently in flight (navigation, find, click,
+ * value change or script), so that {@link SessionWatchdog} can spot a browser that hangs.
+ */
+public class WebDriverSession {
+
+    private static final Logger log = Logger.getLogger(WebDriverSession.class);
+    private static final String WAIT = "wait";
+    private static final AtomicInteger counter = new AtomicInteger();
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    /**
+     * Starts scripts that wait inside the page. They are tracked like any other command, but
+     * their duration says nothing about how responsive the browser is.
+     */
+    public static final String WAIT_SCRIPT_MARKER = "/* wait */";
+
+    private final int id;
+    private final EventFiringWebDriver driver;
+    private final long createdAt;
+    private final AtomicBoolean quit = new AtomicBoolean();
+    private final AtomicLong commandCount = new AtomicLong();
+    private volatile boolean dead;
+    private volatile long commandStartedAt;
+    private volatile String command;
+    private volatile double commandLatency;
+
+    public WebDriverSession(EventFiringWebDriver driver) {
+        this.id = counter.incrementAndGet();
+        this.driver = driver;
+        this.createdAt = System.currentTimeMillis();
+        driver.register(new CommandTracker());
+    }
+
+    public EventFiringWebDriver getDriver() {
+        return driver;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Cheap liveness probe: asking for the current window handle is a single round trip
+     * that fails fast when the browser or its driver process is gone.
+     */
+    public boolean isAlive() {
+        try {
+            driver.getWindowHandle();
+            return true;
+        } catch (Exception e) {
+            log.warn(this + " failed liveness probe: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    void markDead() {
+        dead = true;
+    }
+
+    /**
+     * @return how long the command currently in flight has been running, 0 if there is none
+     */
+    public long getCommandDuration(long now) {
+        long startedAt = commandStartedAt;
+        return startedAt == 0 ? 0 : now - startedAt;
+    }
+
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return moving average of the command durations in ms, 0 before the first command
+     */
+    public double getCommandLatency() {
+        return commandLatency;
+    }
+
+    public void quit() {
+        if (!quit.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            driver.quit();
+        } catch (Throwable e) {
+            log.error("Unable to quit " + this, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "session #" + id;
+    }
+
+    private void started(String name) {
+        command = name;
+        commandStartedAt = System.currentTimeMillis();
+        commandCount.incrementAndGet();
+    }
+
+    private void finished() {
+        long startedAt = commandStartedAt;
+        commandStartedAt = 0;
+        if (startedAt != 0 && !WAIT.equals(command)) {
+            long duration = System.currentTimeMillis() - startedAt;
+            double latency = commandLatency;
+            commandLatency = latency == 0 ? duration : LATENCY_SMOOTHING * duration + (1 - LATENCY_SMOOTHING) * latency;
+        }
+    }
+
+    private class CommandTracker extends AbstractWebDriverEventListener {
+
+        @Override
+        public void beforeNavigateTo(String url, WebDriver driver) {
+            started("navigate to " + url);
+        }
+
+        @Override
+        public void afterNavigateTo(String url, WebDriver driver) {
+            finished();
+        }
+
+        @Override
+        public void beforeNavigateBack(WebDriver driver) {
+            started("navigate back");
+        }
+
+        @Override
+        public void afterNavigateBack(WebDriver driver) {
+            finished();
+        }
+
+        @Override
+        public void beforeNavigateForward(WebDriver driver) {
+            started("navigate forward");
+        }
+
+        @Override
+        public void afterNavigateForward(WebDriver driver) {
+            finished();
+        }
+
+        @Override
+        public void beforeFindBy(By by, WebElement element, WebDriver driver) {
+            started("find " + by);
+        }
+
+        @Override
+        public void afterFindBy(By by, WebElement element, WebDriver driver) {
+            finished();
+        }
+
+        @Override
+        public void beforeClickOn(WebElement element, WebDriver driver) {
+            started("click");
+        }
+
+        @Override
+        public void afterClickOn(WebElement element, WebDriver driver) {
+            finished();
+        }
+
+        @Override
+        public void beforeChangeValueOf(WebElement element, WebDriver driver) {
+            started("change value");
+        }
+
+        @Override
+        public void afterChangeValueOf(WebElement element, WebDriver driver) {
+            finished();
+        }
+
+        @Override
+        public void beforeScript(String script, WebDriver driver) {
+            started(script.startsWith(WAIT_SCRIPT_MARKER) ? WAIT : "script");
+        }
+
+        @Override
+        public void afterScript(String script, WebDriver driver) {
+            finished();
+        }
+
+        @Override
+        public void onException(Throwable error, WebDriver driver) {
+            finished();
+            if (error instanceof UnreachableBrowserException) {
+                markDead();
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.freespace.testingplatform.webdriver.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.internal.Coordinates;
+import org.openqa.selenium.internal.Locatable;
+import org.openqa.selenium.internal.WrapsDriver;
+import org.openqa.selenium.internal.WrapsElement;
+
+/**
+ * A WebElement that remembers its tag name and its string attributes (id, name, type,
+ * value, class, href, title and label) while the DOM stays unchanged.
+ * <p/>
+ * All of them are read in one script call on the first read, together with the
+ * {@link DomGeneration}. Later reads are answered from memory, without a round trip, until
+ * the driver sends a command that may let the page change. The next read after one sends
+ * the generation back to the page and gets the values again only if it has moved, or
+ * always after a script. Acting on the element through this wrapper forgets them right
+ * away. The tag name never changes and is read only once. Other attributes and everything
+ * else go to the wrapped element.
+ */
+public class CachingWebElement implements WebElement, WrapsElement, WrapsDriver, Locatable {
+
+    static final List<String> CACHED_ATTRIBUTES =
+            Arrays.asList("id", "name", "type", "value", "class", "href", "title", "label");
+
+    private static final String READ_SCRIPT = DomGeneration.READ_SCRIPT_MARKER + DomGeneration.HOOK
+            + "var e = arguments[0], names = arguments[1], known = arguments[2], values = [];"
+            + "var token = " + DomGeneration.TOKEN + ";"
+            + "if (token == null || token == known) return [token];"
+            + "for (var i = 0; i < names.length; i++) {"
+            + "  var value = e[names[i] == 'class' ? 'className' : names[i]];"
+            + "  if (value == null || typeof value == 'object' || typeof value == 'function') value = e.getAttribute(names[i]);"
+            + "  values.push(value == null ? null : '' + value);"
+            + "}"
+            + "return [token, e.tagName.toLowerCase(), values];";
+
+    private final WebElement element;
+    private final WebDriver driver;
+    private boolean unobservable;
+    private String generation;
+    private long commands;
+    private long scripts;
+    private String tagName;
+    private final Map<String, String> attributes = new HashMap<String, String>();
+
+    private CachingWebElement(WebElement element, WebDriver driver) {
+        this.element = element;
+        this.driver = driver;
+    }
+
+    /**
+     * @return the element wrapped in a cache, or the element itself if it does not tell
+     *         the driver it was found with
+     */
+    public static WebElement wrap(WebElement element) {
+        if (element instanceof CachingWebElement) {
+            return element;
+        }
+        WebDriver driver = JsUtils.driverOf(element);
+        return driver == null ? element : new CachingWebElement(element, driver);
+    }
+
+    /**
+     * @return the element that was wrapped, or the element itself if it is not a cache
+     */
+    public static WebElement unwrap(WebElement element) {
+        return element instanceof CachingWebElement ? ((CachingWebElement) element).element : element;
+    }
+
+    public synchronized String getTagName() {
+        return tagName != null || read() ? tagName : element.getTagName();
+    }
+
+    public String getAttribute(String name) {
+        if (CACHED_ATTRIBUTES.contains(name)) {
+            synchronized (this) {
+                if (read()) {
+                    return attributes.get(name);
+                }
+            }
+        }
+        return element.getAttribute(name);
+    }
+
+    /**
+     * Forgets the cached values, they are read again on the next use.
+     */
+    public synchronized void invalidate() {
+        generation = null;
+    }
+
+    /**
+     * @return false if the browser cannot tell when the DOM changes, then nothing is cached
+     */
+    private synchronized boolean read() {
+        if (unobservable) {
+            return false;
+        }
+        DomGeneration dom = DomGeneration.of(driver);
+        long sentCommands = dom.getCommands();
+        long sentScripts = dom.getScripts();
+        if (generation != null && sentCommands == commands) {
+            return true;
+        }
+        String known = sentScripts == scripts ? generation : null;
+        List<Object> read = JsUtils.execute(READ_SCRIPT, driver, element, CACHED_ATTRIBUTES, known);
+        generation = (String) read.get(0);
+        commands = sentCommands;
+        scripts = sentScripts;
+        if (generation == null) {
+            unobservable = true;
+            return false;
+        }
+        if (read.size() == 1) {
+            return true;
+        }
+        List<Object> values = (List<Object>) read.get(2);
+        tagName = (String) read.get(1);
+        for (int i = 0; i < CACHED_ATTRIBUTES.size(); i++) {
+            attributes.put(CACHED_ATTRIBUTES.get(i), (String) values.get(i));
+        }
+        return true;
+    }
+
+    public void click() {
+        invalidate();
+        element.click();
+    }
+
+    public void submit() {
+        invalidate();
+        element.submit();
+    }
+
+    public void sendKeys(CharSequence... keysToSend) {
+        invalidate();
+        element.sendKeys(keysToSend);
+    }
+
+    public void clear() {
+        invalidate();
+        element.clear();
+    }
+
+    public boolean isSelected() {
+        return element.isSelected();
+    }
+
+    public boolean isEnabled() {
+        return element.isEnabled();
+    }
+
+    public String getText() {
+        return element.getText();
+    }
+
+    public List<WebElement> findElements(By by) {
+        return element.findElements(by);
+    }
+
+    public WebElement findElement(By by) {
+        return element.findElement(by);
+    }
+
+    public boolean isDisplayed() {
+        return element.isDisplayed();
+    }
+
+    public Point getLocation() {
+        return element.getLocation();
+    }
+
+    public Dimension getSize() {
+        return element.getSize();
+    }
+
+    public String getCssValue(String propertyName) {
+        return element.getCssValue(propertyName);
+    }
+
+    public Point getLocationOnScreenOnceScrolledIntoView() {
+        return ((Locatable) element).getLocationOnScreenOnceScrolledIntoView();
+    }
+
+    public Coordinates getCoordinates() {
+        return ((Locatable) element).getCoordinates();
+    }
+
+    public WebElement getWrappedElement() {
+        return element;
+    }
+
+    public WebDriver getWrappedDriver() {
+        return driver;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return element.equals(other instanceof CachingWebElement ? ((CachingWebElement) other).element : other);
+    }
+
+    @Override
+    public int hashCode() {
+        return element.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return element.toString();
+    }
+}
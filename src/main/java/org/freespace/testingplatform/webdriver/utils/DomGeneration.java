@@ -0,0 +1,167 @@
+package org.freespace.testingplatform.webdriver.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.freespace.testingplatform.webdriver.session.WebDriverSession;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.AbstractWebDriverEventListener;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
+
+/**
+ * Tells whether the DOM of a browser may have changed, for caches of element properties
+ * such as {@link CachingWebElement}.
+ * <p/>
+ * Commands sent through the EventFiringWebDriver that may let the page change are counted
+ * here: clicks, value changes, navigations, waits ({@link WebDriverSession#WAIT_SCRIPT_MARKER})
+ * and scripts, except those that start with {@link #READ_SCRIPT_MARKER}. While the count
+ * stands still, caches answer from memory without a round trip; changes a page makes on
+ * its own, from a timer say, are seen after the next such command.
+ * <p/>
+ * Once the count has moved, the page tells whether anything changed: it keeps a generation
+ * counter that a MutationObserver and the input and change events bump, and a new document
+ * starts a counter with a new id. A script may set properties such as a value without any
+ * of those, so scripts are counted separately too, see {@link #getScripts()}; after one,
+ * caches read everything again. Helpers that change properties from a script call
+ * {@link #changed()} themselves, for drivers without this listener.
+ * <p/>
+ * Browsers without MutationObserver report no generation and nothing is cached for them.
+ * <p/>
+ * Element handles live longer: they are kept until the next page load, which is counted
+ * from navigations and from StaleElementReferenceExceptions, see {@link #getPageLoads()}.
+ */
+public class DomGeneration extends AbstractWebDriverEventListener {
+
+    /**
+     * Starts scripts that only read the page, they do not count as a change.
+     */
+    public static final String READ_SCRIPT_MARKER = "/* read */";
+
+    static final String HOOK =
+            "if (!window.__generation) { (function () {"
+                    + "var g = window.__generation = {id: new Date().getTime() + '-' + Math.random(), count: 0};"
+                    + "function bump() { g.count++; }"
+                    + "var Observer = window.MutationObserver || window.WebKitMutationObserver;"
+                    + "if (Observer) {"
+                    + "  new Observer(bump).observe(document.documentElement, {childList: true, subtree: true, attributes: true, characterData: true});"
+                    + "} else {"
+                    + "  g.unobserved = true;"
+                    + "}"
+                    + "if (document.addEventListener) {"
+                    + "  document.addEventListener('input', bump, true);"
+                    + "  document.addEventListener('change', bump, true);"
+                    + "}"
+                    + "})(); }";
+
+    /**
+     * Script expression for the page generation, null if the page cannot observe itself.
+     */
+    static final String TOKEN = "(window.__generation.unobserved ? null : window.__generation.id + ':' + window.__generation.count)";
+
+    private static final Map<WebDriver, DomGeneration> generations =
+            Collections.synchronizedMap(new WeakHashMap<WebDriver, DomGeneration>());
+
+    private long commands;
+    private long scripts;
+    private long pageLoads;
+
+    /**
+     * @param driver the EventFiringWebDriver or the driver it wraps, both share one generation
+     */
+    public static DomGeneration of(WebDriver driver) {
+        if (driver instanceof EventFiringWebDriver) {
+            driver = ((EventFiringWebDriver) driver).getWrappedDriver();
+        }
+        synchronized (generations) {
+            DomGeneration generation = generations.get(driver);
+            if (generation == null) {
+                generation = new DomGeneration();
+                generations.put(driver, generation);
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * @return how many commands that may have changed the page were sent, values read while
+     *         it differs from now are out of date even if the page generation is the same
+     */
+    public synchronized long getCommands() {
+        return commands;
+    }
+
+    /**
+     * @return how many scripts that may have set properties without the page noticing were
+     *         sent, values read while it differs from now have to be read again
+     */
+    public synchronized long getScripts() {
+        return scripts;
+    }
+
+    public synchronized void changed() {
+        commands++;
+    }
+
+    /**
+     * @return how many times a new document may have been loaded, element handles found
+     *         before the last one may be stale
+     */
+    public synchronized long getPageLoads() {
+        return pageLoads;
+    }
+
+    public synchronized void loaded() {
+        pageLoads++;
+        commands++;
+    }
+
+    @Override
+    public void afterNavigateTo(String url, WebDriver driver) {
+        loaded();
+    }
+
+    @Override
+    public void afterNavigateBack(WebDriver driver) {
+        loaded();
+    }
+
+    @Override
+    public void afterNavigateForward(WebDriver driver) {
+        loaded();
+    }
+
+    @Override
+    public void afterClickOn(WebElement element, WebDriver driver) {
+        changed();
+    }
+
+    @Override
+    public void afterChangeValueOf(WebElement element, WebDriver driver) {
+        changed();
+    }
+
+    @Override
+    public void afterScript(String script, WebDriver driver) {
+        if (script.startsWith(READ_SCRIPT_MARKER)) {
+            return;
+        }
+        synchronized (this) {
+            commands++;
+            if (!script.startsWith(WebDriverSession.WAIT_SCRIPT_MARKER)) {
+                scripts++;
+            }
+        }
+    }
+
+    @Override
+    public void onException(Throwable error, WebDriver driver) {
+        if (error instanceof StaleElementReferenceException) {
+            loaded();
+            return;
+        }
+        changed();
+    }
+}
@@ -0,0 +1,62 @@
+package org.freespace.testingplatform.webdriver.utils;
+
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+
+/**
+ * Properties of one element as read by {@link JsUtils#readAll(java.util.List, String...)}.
+ * Properties that were not asked for read as null, or false for visibility.
+ */
+public class ElementSnapshot {
+
+    private final Map<String, Object> values;
+
+    ElementSnapshot(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    public String getText() {
+        return (String) values.get(JsUtils.TEXT);
+    }
+
+    public String getInnerHtml() {
+        return (String) values.get(JsUtils.INNER_HTML);
+    }
+
+    public String getTagName() {
+        return (String) values.get(JsUtils.TAG_NAME);
+    }
+
+    public String getAttribute(String name) {
+        return (String) values.get(JsUtils.attribute(name));
+    }
+
+    public boolean isVisible() {
+        return Boolean.TRUE.equals(values.get(JsUtils.VISIBLE));
+    }
+
+    /**
+     * @return the top left corner relative to the page, like WebElement.getLocation()
+     */
+    public Point getLocation() {
+        List<?> bounds = (List<?>) values.get(JsUtils.BOUNDS);
+        return bounds == null ? null : new Point(intValue(bounds.get(0)), intValue(bounds.get(1)));
+    }
+
+    public Dimension getSize() {
+        List<?> bounds = (List<?>) values.get(JsUtils.BOUNDS);
+        return bounds == null ? null : new Dimension(intValue(bounds.get(2)), intValue(bounds.get(3)));
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+
+    private static int intValue(Object number) {
+        return (int) Math.round(((Number) number).doubleValue());
+    }
+}
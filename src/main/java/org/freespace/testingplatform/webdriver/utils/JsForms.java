@@ -0,0 +1,144 @@
+package org.freespace.testingplatform.webdriver.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Reads and fills all the controls of a form in a single script call each.
+ * <p/>
+ * Controls are the INPUT, SELECT, TEXTAREA and BUTTON elements inside the form, in
+ * document order; {@link #CONTROLS} finds the same elements, in the same order, through
+ * WebDriver.
+ */
+public class JsForms {
+
+    public static final By CONTROLS = By.xpath(".//*[self::input or self::select or self::textarea or self::button]");
+
+    private static final String FIND_CONTROLS =
+            "var controls = arguments[0].querySelectorAll('input, select, textarea, button');";
+
+    private static final String READ_SCRIPT = DomGeneration.READ_SCRIPT_MARKER + FIND_CONTROLS
+            + "var result = [];"
+            + "for (var i = 0; i < controls.length; i++) {"
+            + "  var c = controls[i], tag = c.tagName.toLowerCase(), value = c.value;"
+            + "  if (tag == 'select') {"
+            + "    value = [];"
+            + "    for (var o = 0; o < c.options.length; o++) if (c.options[o].selected) value.push(c.options[o].value);"
+            + "  }"
+            + "  result.push([tag, (c.type || tag).toLowerCase(), c.name || '', c.id || '', value, !!c.checked, !!c.disabled]);"
+            + "}"
+            + "return result;";
+
+    private static final String FILL_SCRIPT = FIND_CONTROLS
+            + "var names = arguments[1], values = arguments[2], failed = [];"
+            + "function fire(control) {"
+            + "  var names = ['input', 'change'];"
+            + "  for (var i = 0; i < names.length; i++) {"
+            + "    if (document.createEvent) {"
+            + "      var event = document.createEvent('HTMLEvents');"
+            + "      event.initEvent(names[i], true, false);"
+            + "      control.dispatchEvent(event);"
+            + "    } else if (names[i] == 'change') {"
+            + "      control.fireEvent('onchange');"
+            + "    }"
+            + "  }"
+            + "}"
+            + "function wanted(value, candidate) {"
+            + "  if (value instanceof Array) {"
+            + "    for (var i = 0; i < value.length; i++) if (String(value[i]) == candidate) return true;"
+            + "    return false;"
+            + "  }"
+            + "  return String(value) == candidate;"
+            + "}"
+            + "for (var n = 0; n < names.length; n++) {"
+            + "  var value = values[n], set = false, refused = false;"
+            + "  for (var i = 0; i < controls.length; i++) {"
+            + "    var c = controls[i], tag = c.tagName.toLowerCase(), type = (c.type || '').toLowerCase(), changed = false;"
+            + "    if (c.name != names[n] && c.id != names[n]) continue;"
+            + "    if (type == 'radio' && !wanted(value, c.value)) continue;"
+            + "    var text = tag == 'textarea' || (tag == 'input'"
+            + "        && /^(text|password|email|number|search|tel|url|date|time|datetime|datetime-local|month|week|color|range|hidden|)$/.test(type));"
+            + "    if (c.disabled || (text && c.readOnly)) { refused = true; continue; }"
+            + "    if (type == 'checkbox') {"
+            + "      var check = typeof value == 'boolean' ? value : value == 'true' || wanted(value, c.value);"
+            + "      changed = c.checked != check;"
+            + "      c.checked = check;"
+            + "    } else if (type == 'radio') {"
+            + "      changed = !c.checked;"
+            + "      c.checked = true;"
+            + "    } else if (tag == 'select') {"
+            + "      for (var o = 0; o < c.options.length; o++) {"
+            + "        var option = c.options[o], select = wanted(value, option.value) || wanted(value, option.text);"
+            + "        if (option.selected != select && (select || c.multiple)) { option.selected = select; changed = true; }"
+            + "      }"
+            + "    } else if (text) {"
+            + "      var string = value == null ? '' : String(value);"
+            + "      if (c.value != string) { c.value = string; changed = true; }"
+            + "    } else {"
+            + "      refused = true;"
+            + "      continue;"
+            + "    }"
+            + "    set = true;"
+            + "    if (changed) fire(c);"
+            + "  }"
+            + "  if (!set || refused) failed.push(names[n]);"
+            + "}"
+            + "return failed;";
+
+    /**
+     * @return {@code [tag, type, name, id, value, checked, disabled]} of every control, where
+     *         the value of a SELECT is the list of its selected option values
+     */
+    public static List<List<Object>> readControls(WebDriver driver, WebElement form) {
+        return JsUtils.execute(READ_SCRIPT, driver, form);
+    }
+
+    /**
+     * Sets the controls named by the keys (name, or id for controls without a name) and
+     * fires input and change on every control that changed.
+     * <p/>
+     * Text fields and text areas take the value as text. Checkboxes are checked by
+     * {@code true} or by their own value, radio buttons and select options by their value;
+     * options also by their text. Collections and arrays check or select several of them.
+     * Disabled and read-only controls are left alone, as are buttons and file inputs, which
+     * cannot be filled with a value.
+     *
+     * @return the keys no control was found for, or whose control was left alone; for radio
+     *         buttons, the keys none of whose enabled buttons has the value
+     */
+    public static List<String> fill(WebDriver driver, WebElement form, Map<String, ?> values) {
+        List<String> names = new ArrayList<String>();
+        List<Object> converted = new ArrayList<Object>();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            names.add(entry.getKey());
+            converted.add(convert(entry.getValue()));
+        }
+        List<String> failed = JsUtils.execute(FILL_SCRIPT, driver, form, names, converted);
+        DomGeneration.of(driver).changed();
+        return failed;
+    }
+
+    private static Object convert(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Object[]) {
+            value = Arrays.asList((Object[]) value);
+        }
+        if (value instanceof Collection) {
+            List<String> texts = new ArrayList<String>();
+            for (Object item : (Collection<?>) value) {
+                texts.add(String.valueOf(item));
+            }
+            return texts;
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,90 @@
+package org.freespace.testingplatform.webdriver.utils;
+
+import org.openqa.selenium.By;
+
+/**
+ * Translates Selenium locators into arguments for scripts that look elements up inside the
+ * page, so that several lookups can be done in a single round trip.
+ * <p/>
+ * Scripts include {@link #FIND_FUNCTION} and call {@code find(type, value)} with the pair
+ * returned by {@link #describe(By)}. The locator travels as a script argument, never as
+ * part of the script source.
+ */
+public class JsLocators {
+
+    /**
+     * Defines {@code find(type, value)}, returning an array of the matching elements in
+     * document order.
+     */
+    public static final String FIND_FUNCTION =
+            "function find(type, value) {"
+                    + "var doc = document, found = [], i;"
+                    + "function all(list) { var result = []; for (var j = 0; j < list.length; j++) result.push(list[j]); return result; }"
+                    + "function text(e) { return ((e.innerText != null ? e.innerText : e.textContent) || '').replace(/^\\s+|\\s+$/g, ''); }"
+                    + "if (type == 'id') { var e = doc.getElementById(value); return e ? [e] : []; }"
+                    + "if (type == 'css') return all(doc.querySelectorAll(value));"
+                    + "if (type == 'class') return all(doc.querySelectorAll('.' + value));"
+                    + "if (type == 'name') return all(doc.getElementsByName(value));"
+                    + "if (type == 'tag') return all(doc.getElementsByTagName(value));"
+                    + "if (type == 'xpath') {"
+                    + "  var snapshot = doc.evaluate(value, doc, null, 7, null);"
+                    + "  for (i = 0; i < snapshot.snapshotLength; i++) found.push(snapshot.snapshotItem(i));"
+                    + "  return found;"
+                    + "}"
+                    + "var links = doc.getElementsByTagName('a');"
+                    + "for (i = 0; i < links.length; i++) {"
+                    + "  var linkText = text(links[i]);"
+                    + "  if (type == 'link' ? linkText == value : linkText.indexOf(value) >= 0) found.push(links[i]);"
+                    + "}"
+                    + "return found;"
+                    + "}";
+
+    /**
+     * Defines {@code visible(element)}, an approximation of WebElement.isDisplayed(): the
+     * element takes up space and neither it nor an ancestor is hidden by style.
+     */
+    public static final String VISIBLE_FUNCTION =
+            "function visible(e) {"
+                    + "if (e.type == 'hidden' && e.tagName.toLowerCase() == 'input') return false;"
+                    + "if (!(e.offsetWidth || e.offsetHeight || (e.getClientRects && e.getClientRects().length))) return false;"
+                    + "for (var node = e; node && node.nodeType == 1; node = node.parentNode) {"
+                    + "  var style = window.getComputedStyle ? window.getComputedStyle(node, null) : node.currentStyle;"
+                    + "  if (style && (style.display == 'none' || style.visibility == 'hidden')) return false;"
+                    + "}"
+                    + "return true;"
+                    + "}";
+
+    /**
+     * Selenium's own locator classes, the {@code toString()} prefix they use and the type for
+     * {@code find}.
+     */
+    private static final Object[][] LOCATORS = {
+            {By.ById.class, "By.id: ", "id"},
+            {By.ByCssSelector.class, "By.selector: ", "css"},
+            {By.ByClassName.class, "By.className: ", "class"},
+            {By.ByName.class, "By.name: ", "name"},
+            {By.ByTagName.class, "By.tagName: ", "tag"},
+            {By.ByXPath.class, "By.xpath: ", "xpath"},
+            {By.ByLinkText.class, "By.linkText: ", "link"},
+            {By.ByPartialLinkText.class, "By.partialLinkText: ", "partialLink"},
+    };
+
+    /**
+     * The value is taken from {@code toString()}, which Selenium does not promise to keep, so
+     * only locators of exactly Selenium's own classes are translated, and only while their
+     * text still has the expected prefix.
+     *
+     * @return the {@code [type, value]} pair for {@code find}, or null for locators that
+     *         can only be resolved by WebDriver itself (chained, custom, subclassed...)
+     */
+    public static String[] describe(By by) {
+        for (Object[] locator : LOCATORS) {
+            if (by.getClass() == locator[0]) {
+                String text = by.toString();
+                String prefix = (String) locator[1];
+                return text.startsWith(prefix) ? new String[]{(String) locator[2], text.substring(prefix.length())} : null;
+            }
+        }
+        return null;
+    }
+}
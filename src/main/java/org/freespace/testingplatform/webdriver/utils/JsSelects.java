@@ -0,0 +1,113 @@
+package org.freespace.testingplatform.webdriver.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Reads and changes the options of an HTML select list in a single script call each, for
+ * lists with hundreds of options where per-option WebElement calls take seconds.
+ * <p/>
+ * Selection changes fire the same {@code input} and {@code change} events on the select
+ * as a user would, once per call and only if the selection actually changed.
+ */
+public class JsSelects {
+
+    private static final String FIRE_CHANGE =
+            "function fireChange(select) {"
+                    + "  var names = ['input', 'change'];"
+                    + "  for (var i = 0; i < names.length; i++) {"
+                    + "    if (document.createEvent) {"
+                    + "      var event = document.createEvent('HTMLEvents');"
+                    + "      event.initEvent(names[i], true, false);"
+                    + "      select.dispatchEvent(event);"
+                    + "    } else if (names[i] == 'change') {"
+                    + "      select.fireEvent('onchange');"
+                    + "    }"
+                    + "  }"
+                    + "}";
+
+    private static final String READ_SCRIPT = DomGeneration.READ_SCRIPT_MARKER
+            + "var select = arguments[0], options = select.options, groups = select.getElementsByTagName('optgroup'), result = [];"
+            + "for (var i = 0; i < options.length; i++) {"
+            + "  var option = options[i], group = option.parentNode, groupIndex = -1;"
+            + "  for (var g = 0; g < groups.length; g++) if (groups[g] == group) groupIndex = g;"
+            + "  result.push([option.text.replace(/^\\s+|\\s+$/g, ''), option.value, option.id, option.selected,"
+            + "      groupIndex, groupIndex >= 0 ? group.label : null]);"
+            + "}"
+            + "return [!!select.multiple, result];";
+
+    private static final String DISABLED =
+            "function disabled(select, option) {"
+                    + "  var group = option.parentNode;"
+                    + "  return select.disabled || option.disabled"
+                    + "      || (group.tagName.toLowerCase() == 'optgroup' && group.disabled);"
+                    + "}";
+
+    private static final String SELECT_SCRIPT = FIRE_CHANGE + DISABLED
+            + "var scope = arguments[0], key = arguments[1], wanted = arguments[2];"
+            + "var select = scope.tagName.toLowerCase() == 'select' ? scope : scope.parentNode;"
+            + "var options = scope.getElementsByTagName('option'), matched = {}, found = 0, changes = [];"
+            + "if (!select.multiple && wanted.length > 1) return false;"
+            + "for (var i = 0; i < options.length; i++) {"
+            + "  var want = false;"
+            + "  for (var w = 0; w < wanted.length; w++) if (options[i][key] == wanted[w]) want = true;"
+            + "  if (want ? !options[i].selected : (select.multiple && options[i].selected)) {"
+            + "    if (disabled(select, options[i])) return false;"
+            + "    changes.push([options[i], want]);"
+            + "  }"
+            + "  if (want && !matched[options[i][key]]) {"
+            + "    matched[options[i][key]] = true;"
+            + "    found++;"
+            + "  }"
+            + "}"
+            + "if (found < wanted.length) return false;"
+            + "for (var c = 0; c < changes.length; c++) changes[c][0].selected = changes[c][1];"
+            + "if (changes.length > 0) fireChange(select);"
+            + "return true;";
+
+    private static final String SELECT_INDEX_SCRIPT = FIRE_CHANGE + DISABLED
+            + "var select = arguments[0], index = arguments[1];"
+            + "if (index < 0 || index >= select.options.length) return false;"
+            + "if (!select.options[index].selected) {"
+            + "  if (disabled(select, select.options[index])) return false;"
+            + "  select.options[index].selected = true;"
+            + "  fireChange(select);"
+            + "}"
+            + "return true;";
+
+    /**
+     * @return {@code [multiple, [[text, value, id, selected, group index, group label], ...]]},
+     *         group index -1 and label null for options outside any group
+     */
+    public static List<Object> readOptions(WebDriver driver, WebElement select) {
+        return JsUtils.execute(READ_SCRIPT, driver, select);
+    }
+
+    /**
+     * Selects exactly the options of the select list, or of one of its option groups, whose
+     * {@code key} property ("value" or "id") is one of the given ones. In a single select
+     * list the other options are left alone. Disabled options, and options of a disabled
+     * list or group, are never changed. Everything is checked before anything changes, so
+     * when the selection cannot be made as a whole it is left as it was.
+     *
+     * @return true if every given option exists and all of them could be selected together,
+     *         false if not or if a disabled option was in the way; nothing changed then
+     */
+    public static boolean select(WebDriver driver, WebElement selectOrGroup, String key, String[] selections) {
+        Boolean success = JsUtils.execute(SELECT_SCRIPT, driver, selectOrGroup, key, Arrays.asList(selections));
+        DomGeneration.of(driver).changed();
+        return success;
+    }
+
+    /**
+     * @return false if there is no option at the index, or it is disabled and not selected yet
+     */
+    public static boolean selectIndex(WebDriver driver, WebElement select, int index) {
+        Boolean success = JsUtils.execute(SELECT_INDEX_SCRIPT, driver, select, index);
+        DomGeneration.of(driver).changed();
+        return success;
+    }
+}
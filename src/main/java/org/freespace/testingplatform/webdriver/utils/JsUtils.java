@@ -2,16 +2,69 @@ package org.freespace.testingplatform.webdriver.utils;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.apache.log4j.Logger;
+import org.freespace.testingplatform.webdriver.TestDeadline;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.WrapsDriver;
+import org.openqa.selenium.internal.WrapsElement;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
 
 public class JsUtils {
 
+    /**
+     * Properties for {@link #readAll(List, String...)}: the trimmed rendered text, empty for
+     * hidden elements as with {@link WebElement#getText()}, the inner HTML, the lower case
+     * tag name, whether the element is visible, and its bounds.
+     * Attributes are asked for with {@link #attribute(String)}.
+     */
+    public static final String TEXT = "text";
+    public static final String INNER_HTML = "innerHTML";
+    public static final String TAG_NAME = "tagName";
+    public static final String VISIBLE = "visible";
+    public static final String BOUNDS = "bounds";
+
+    private static final String READ_ALL_SCRIPT = DomGeneration.READ_SCRIPT_MARKER + JsLocators.VISIBLE_FUNCTION
+            + "var elements = arguments[0], properties = arguments[1], result = [];"
+            + "for (var i = 0; i < elements.length; i++) {"
+            + "  var e = elements[i], values = [];"
+            + "  for (var p = 0; p < properties.length; p++) {"
+            + "    var property = properties[p], value = null;"
+            + "    if (property == 'text') {"
+            + "      value = !visible(e) ? '' : (e.innerText != null ? e.innerText : e.textContent).replace(/^\\s+|\\s+$/g, '');"
+            + "    } else if (property == 'innerHTML') {"
+            + "      value = e.innerHTML;"
+            + "    } else if (property == 'tagName') {"
+            + "      value = e.tagName.toLowerCase();"
+            + "    } else if (property == 'visible') {"
+            + "      value = visible(e);"
+            + "    } else if (property == 'bounds') {"
+            + "      var r = e.getBoundingClientRect(), doc = document.documentElement;"
+            + "      var left = window.pageXOffset || doc.scrollLeft, top = window.pageYOffset || doc.scrollTop;"
+            + "      value = [r.left + left, r.top + top, r.right - r.left, r.bottom - r.top];"
+            + "    } else if (property.charAt(0) == '@') {"
+            + "      value = e.getAttribute(property.substring(1));"
+            + "    }"
+            + "    values.push(value);"
+            + "  }"
+            + "  result.push(values);"
+            + "}"
+            + "return result;";
+
     private JavascriptExecutor js;
     private static final Logger log = Logger.getLogger(JsUtils.class);
+    private static final Map<WebDriver, WeakReference<WebDriver>> eventFiringDrivers =
+            Collections.synchronizedMap(new WeakHashMap<WebDriver, WeakReference<WebDriver>>());
 
     public JsUtils(WebDriver driver) {
         this.js = (JavascriptExecutor) driver;
@@ -32,12 +85,12 @@ public class JsUtils {
     }
 
     public boolean isAjaxComplete() {
-        final Boolean result = (Boolean) js.executeScript("return $.active == 0");
+        final Boolean result = (Boolean) js.executeScript(DomGeneration.READ_SCRIPT_MARKER + "return $.active == 0");
         return result;
     }
 
     public static String innerHtml(WebElement element, WebDriver driver) {
-        return execute("return arguments[0].innerHTML", driver, element);
+        return execute(DomGeneration.READ_SCRIPT_MARKER + "return arguments[0].innerHTML", driver, element);
     }
 
     /**
@@ -86,13 +139,112 @@ public class JsUtils {
 
     }
 
+    public static String attribute(String name) {
+        return "@" + name;
+    }
+
+    /**
+     * Reads the given properties of all the elements in a single script call, instead of
+     * one call per element and property.
+     *
+     * @param properties {@link #TEXT}, {@link #INNER_HTML}, {@link #TAG_NAME}, {@link #VISIBLE},
+     *                   {@link #BOUNDS} or {@link #attribute(String)}
+     * @return the properties of each element, in the order of the elements
+     */
+    public static List<ElementSnapshot> readAll(WebDriver driver, List<WebElement> elements, String... properties) {
+        List<ElementSnapshot> result = new ArrayList<ElementSnapshot>();
+        if (elements.isEmpty()) {
+            return result;
+        }
+        List<List<Object>> rows = execute(READ_ALL_SCRIPT, driver, elements, Arrays.asList(properties));
+        for (List<Object> row : rows) {
+            Map<String, Object> values = new HashMap<String, Object>();
+            for (int i = 0; i < properties.length; i++) {
+                values.put(properties[i], row.get(i));
+            }
+            result.add(new ElementSnapshot(values));
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #readAll(WebDriver, List, String...)}, with the driver the elements were
+     * found with.
+     *
+     * @throws IllegalArgumentException if the elements do not tell their driver
+     */
+    public static List<ElementSnapshot> readAll(List<WebElement> elements, String... properties) {
+        if (elements.isEmpty()) {
+            return new ArrayList<ElementSnapshot>();
+        }
+        WebDriver driver = driverOf(elements.get(0));
+        if (driver == null) {
+            throw new IllegalArgumentException("The elements do not tell their driver, pass it to readAll");
+        }
+        return readAll(driver, elements, properties);
+    }
+
+    /**
+     * Makes {@link #driverOf(WebElement)} answer with the event firing driver instead of the
+     * driver it wraps, so that scripts run for elements are seen by its listeners.
+     */
+    public static void register(EventFiringWebDriver driver) {
+        eventFiringDrivers.put(driver.getWrappedDriver(), new WeakReference<WebDriver>(driver));
+    }
+
+    /**
+     * @return the driver the element was found with, the event firing one if it was
+     *         registered, or null if the element cannot tell or the driver cannot run scripts
+     */
+    public static WebDriver driverOf(WebElement element) {
+        // page object fields only wrap the element, which in turn knows its driver
+        while (!(element instanceof WrapsDriver) && element instanceof WrapsElement) {
+            element = ((WrapsElement) element).getWrappedElement();
+        }
+        if (element instanceof WrapsDriver) {
+            WebDriver driver = ((WrapsDriver) element).getWrappedDriver();
+            WeakReference<WebDriver> eventFiring = eventFiringDrivers.get(driver);
+            if (eventFiring != null && eventFiring.get() != null) {
+                driver = eventFiring.get();
+            }
+            if (driver instanceof JavascriptExecutor) {
+                return driver;
+            }
+        }
+        return null;
+    }
+
     public static <T> T execute(String js, WebDriver driver) {
         return (T) execute(js, driver, new Object[0]);
     }
 
+    /**
+     * Runs the script with wrapped elements among the arguments, such as
+     * {@link CachingWebElement}, replaced by the elements the driver knows. Fails with the
+     * test once its {@link TestDeadline} is used up.
+     */
     public static <T> T execute(String js, WebDriver driver, Object... arguments) {
+        TestDeadline.check();
         JavascriptExecutor jsExecutor = (JavascriptExecutor) driver;
-        return (T) jsExecutor.executeScript(js, arguments);
+        Object[] unwrapped = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            unwrapped[i] = unwrap(arguments[i]);
+        }
+        return (T) jsExecutor.executeScript(js, unwrapped);
+    }
+
+    private static Object unwrap(Object argument) {
+        if (argument instanceof WrapsElement) {
+            return unwrap(((WrapsElement) argument).getWrappedElement());
+        }
+        if (argument instanceof List) {
+            List<Object> list = new ArrayList<Object>();
+            for (Object item : (List<?>) argument) {
+                list.add(unwrap(item));
+            }
+            return list;
+        }
+        return argument;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+package org.freespace.testingplatform.webdriver.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.Locatable;
+import org.openqa.selenium.internal.WrapsDriver;
+import org.openqa.selenium.internal.WrapsElement;
+
+/**
+ * Finds elements that survive partial re-renders of the page.
+ * <p/>
+ * The elements returned remember how they were found: the locator, and the same for the
+ * element they were found in. When a call fails with a StaleElementReferenceException, the
+ * element is located again along that chain and the call is repeated once. Elements found
+ * inside them heal the same way.
+ * <p/>
+ * Elements of a findElements list are not healed: after a re-render the same position may
+ * hold a different element, so their StaleElementReferenceException is passed on, and the
+ * list has to be read again. Elements found inside them still heal as long as the list
+ * element itself is not stale.
+ * <p/>
+ * {@link #getHealCount()} tells how often that happened.
+ */
+public class SelfHealingElements {
+
+    private static final Logger log = Logger.getLogger(SelfHealingElements.class);
+    private static final AtomicLong heals = new AtomicLong();
+
+    /**
+     * @throws org.openqa.selenium.NoSuchElementException if there is no such element now
+     */
+    public static WebElement find(SearchContext context, By by) {
+        return proxy(new Handler(context, null, by, -1));
+    }
+
+    public static List<WebElement> findAll(SearchContext context, By by) {
+        return findAll(context, null, by);
+    }
+
+    /**
+     * @return how many stale elements were located again since start-up
+     */
+    public static long getHealCount() {
+        return heals.get();
+    }
+
+    /**
+     * Counts a stale element located again by other means, such as page object fields.
+     */
+    public static void healed(String what) {
+        heals.incrementAndGet();
+        log.debug("Located stale element again: " + what);
+    }
+
+    private static List<WebElement> findAll(SearchContext context, Handler parent, By by) {
+        List<WebElement> found = parent == null ? context.findElements(by) : parent.current().findElements(by);
+        List<WebElement> result = new ArrayList<WebElement>();
+        for (int i = 0; i < found.size(); i++) {
+            result.add(proxy(new Handler(context, parent, by, i, found.get(i))));
+        }
+        return result;
+    }
+
+    private static WebElement proxy(Handler handler) {
+        List<Class<?>> interfaces = new ArrayList<Class<?>>();
+        interfaces.add(WebElement.class);
+        interfaces.add(WrapsElement.class);
+        if (handler.current() instanceof Locatable) {
+            interfaces.add(Locatable.class);
+        }
+        if (handler.current() instanceof WrapsDriver) {
+            interfaces.add(WrapsDriver.class);
+        }
+        return (WebElement) Proxy.newProxyInstance(SelfHealingElements.class.getClassLoader(),
+                interfaces.toArray(new Class[interfaces.size()]), handler);
+    }
+
+    private static class Handler implements InvocationHandler {
+        private final SearchContext context;
+        private final Handler parent;
+        private final By by;
+        private final int index;
+        private WebElement element;
+
+        Handler(SearchContext context, Handler parent, By by, int index) {
+            this.context = context;
+            this.parent = parent;
+            this.by = by;
+            this.index = index;
+            this.element = locate();
+        }
+
+        Handler(SearchContext context, Handler parent, By by, int index, WebElement element) {
+            this.context = context;
+            this.parent = parent;
+            this.by = by;
+            this.index = index;
+            this.element = element;
+        }
+
+        synchronized WebElement current() {
+            return element;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("getWrappedElement".equals(method.getName())) {
+                return current();
+            }
+            try {
+                return perform(method, args);
+            } catch (StaleElementReferenceException e) {
+                heal(e);
+                return perform(method, args);
+            }
+        }
+
+        private Object perform(Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("findElement".equals(name)) {
+                return proxy(new Handler(context, this, (By) args[0], -1));
+            }
+            if ("findElements".equals(name)) {
+                return findAll(context, this, (By) args[0]);
+            }
+            return call(method, current(), args);
+        }
+
+        /**
+         * Locates the element again, its parent first if that is stale too. Elements of a
+         * list are not located again, see the class comment.
+         */
+        private synchronized void heal(StaleElementReferenceException stale) {
+            if (index >= 0) {
+                throw stale;
+            }
+            try {
+                element = locate();
+            } catch (StaleElementReferenceException e) {
+                if (parent == null) {
+                    throw stale;
+                }
+                parent.heal(e);
+                element = locate();
+            }
+            healed(toString());
+        }
+
+        private WebElement locate() {
+            SearchContext searchContext = parent == null ? context : parent.current();
+            return searchContext.findElement(by);
+        }
+
+        private static Object call(Method method, WebElement target, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public String toString() {
+            String self = index < 0 ? by.toString() : by + "[" + index + "]";
+            return parent == null ? self : parent + " > " + self;
+        }
+    }
+}
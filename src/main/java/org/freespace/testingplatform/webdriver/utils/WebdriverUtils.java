@@ -3,6 +3,8 @@ package org.freespace.testingplatform.webdriver.utils;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.freespace.testingplatform.webdriver.TestDeadline;
+import org.freespace.testingplatform.webdriver.TestDeadlineExceededException;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
@@ -14,18 +16,25 @@ public class WebdriverUtils {
 
     public static List<WebElement> tryGetWebElements(final WebDriver driver, final By by, Integer retries) {
         // todo: delete or generalize
-        for (int retry = 0; retry < retries; ++retry) {
-            List<WebElement> elements = null;
-            try {
-                elements = driver.findElements(by);
-            } catch (Exception ignored) {
-            }
-            if (elements != null) {
-                return elements;
+        long start = TestDeadline.enter();
+        try {
+            for (int retry = 0; retry < retries; ++retry) {
+                List<WebElement> elements = null;
+                try {
+                    elements = driver.findElements(by);
+                } catch (TestDeadlineExceededException e) {
+                    throw e;
+                } catch (Exception ignored) {
+                }
+                if (elements != null) {
+                    return elements;
+                }
+                delay((int) TestDeadline.limit(1000));
             }
-            delay(1000);
+            return null;
+        } finally {
+            TestDeadline.exit("retry find " + by, start);
         }
-        return null;
     }
 
     public static WebElement tryGetWebElement(final WebDriver driver, final By by, Integer retries) {
@@ -33,20 +42,31 @@ public class WebdriverUtils {
     }
 
     public static WebElement tryGetWebElement(final WebDriver driver, final By by, Integer retries, Integer delay) {
-        for (int retry = 0; retry < retries; ++retry) {
-            WebElement element = null;
-            try {
-                element = driver.findElement(by);
-            } catch (Exception ignored) {
-            }
-            if (element != null) {
-                return element;
+        long start = TestDeadline.enter();
+        try {
+            for (int retry = 0; retry < retries; ++retry) {
+                WebElement element = null;
+                try {
+                    element = driver.findElement(by);
+                } catch (TestDeadlineExceededException e) {
+                    throw e;
+                } catch (Exception ignored) {
+                }
+                if (element != null) {
+                    return element;
+                }
+                delay((int) TestDeadline.limit(delay));
             }
-            delay(delay);
+            return null;
+        } finally {
+            TestDeadline.exit("retry find " + by, start);
         }
-        return null;
     }
 
+    /**
+     * @deprecated wait for what the delay stands for, usually
+     *             {@link org.freespace.testingplatform.webdriver.pages.TestingPlatformWait#waitForQuiescence()}
+     */
     @Deprecated
     public static void delay(int millis) {
         if (millis <= 0) {
@@ -65,8 +85,15 @@ public class WebdriverUtils {
             return errors;
         }
         List<WebElement> li = errorList.findElements(By.xpath("//ul[@class='errorList']/li"));
-        for (WebElement webElement : li) {
-            errors.add(webElement.getText());
+        WebDriver driver = JsUtils.driverOf(errorList);
+        if (driver == null) {
+            for (WebElement webElement : li) {
+                errors.add(webElement.getText());
+            }
+            return errors;
+        }
+        for (ElementSnapshot item : JsUtils.readAll(driver, li, JsUtils.TEXT)) {
+            errors.add(item.getText());
         }
         return errors;
     }